@@ -0,0 +1,130 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smpsim-core
+ * %%
+ * Copyright (C) 2018 - 2026 Eric Medvet
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package io.github.ericmedvet.smpsim.core;
+
+import io.github.ericmedvet.smpsim.core.Environment.Configuration;
+import io.github.ericmedvet.smpsim.core.Environment.State;
+import io.github.ericmedvet.smpsim.core.Instruction.Continuation;
+import io.github.ericmedvet.smpsim.core.Instruction.Movement;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.random.RandomGenerator;
+import java.util.stream.IntStream;
+
+// steps the same states with Environment.step() and with slabs, checking that data and individuals are the same at
+// every tick: usage DistributedCheck [nOfTicks] [THREADS|PROCESSES]
+public class DistributedCheck {
+
+  private DistributedCheck() {
+  }
+
+  private static void check(State expected, DistributedEnvironment environment, String name) throws IOException {
+    State actual = environment.state();
+    if (actual.k() != expected.k()) {
+      throw new IllegalStateException("Wrong k for %s: %d != %d".formatted(name, actual.k(), expected.k()));
+    }
+    if (!actual.individuals().equals(expected.individuals())) {
+      throw new IllegalStateException(
+          "Wrong individuals for %s at k=%d: %s != %s".formatted(
+              name,
+              expected.k(),
+              actual.individuals(),
+              expected.individuals()
+          )
+      );
+    }
+    for (Location location : expected.configuration().maxLocation().boundedLocations()) {
+      long actualWord = Utils.bitStringToWord(actual.data().get(location));
+      long expectedWord = Utils.bitStringToWord(expected.data().get(location));
+      if (actualWord != expectedWord) {
+        throw new IllegalStateException(
+            "Wrong data for %s at k=%d in %s: %d != %d".formatted(
+                name,
+                expected.k(),
+                location,
+                actualWord,
+                expectedWord
+            )
+        );
+      }
+    }
+  }
+
+  // all the kinds of semantics, and procedural ones with a header not derived from their seed
+  private static List<Instruction> instructions(Configuration configuration, int kind, long seed) {
+    RandomGenerator rg = new Random(seed);
+    int nOfDimensions = configuration.maxLocation().coords().length;
+    int inputSize = configuration.instructionInputSize();
+    int outputSize = configuration.instructionOutputSize();
+    return IntStream.range(0, 8)
+        .mapToObj(
+            i -> switch (kind) {
+              case 0 -> Instruction.random(nOfDimensions, inputSize, outputSize, rg);
+              case 1 -> Instruction.lazyRandom(nOfDimensions, inputSize, outputSize, rg);
+              case 2 -> Instruction.procedural(nOfDimensions, inputSize, outputSize, seed, i);
+              default -> new Instruction(
+                  Continuation.values()[rg.nextInt(Continuation.values().length)],
+                  IntStream.range(0, nOfDimensions)
+                      .mapToObj(_ -> Movement.values()[rg.nextInt(Movement.values().length)])
+                      .toList(),
+                  new ProceduralSemantics(inputSize, outputSize, seed, i)
+              );
+            }
+        )
+        .toList();
+  }
+
+  public static void main(String[] args) throws IOException {
+    int nOfTicks = (args.length > 0) ? Integer.parseInt(args[0]) : 200;
+    DistributedEnvironment.Mode mode = (args.length > 1) ? DistributedEnvironment.Mode.valueOf(
+        args[1]
+    ) : DistributedEnvironment.Mode.THREADS;
+    int nOfRuns = 0;
+    for (boolean isToroidal : new boolean[]{true, false}) {
+      Configuration configuration = new Configuration(Location.of(24, 20), isToroidal, 3, 3, 64);
+      for (int kind = 0; kind < 4; kind = kind + 1) {
+        for (long seed = 0; seed < 8; seed = seed + 1) {
+          List<Instruction> instructions = instructions(configuration, kind, seed);
+          RandomGenerator rg = new Random(seed);
+          State state = (seed % 2 == 0) ? configuration.lazyInitialState() : configuration.initialState(
+              n -> Utils.randomBitString(n, rg)
+          );
+          String name = "toroidal=%b kind=%d seed=%d".formatted(isToroidal, kind, seed);
+          Environment environment = new Environment(configuration, instructions);
+          try (DistributedEnvironment distributedEnvironment = DistributedEnvironment.start(
+              state,
+              instructions,
+              1 + (int) (seed % 4),
+              mode
+          )) {
+            for (int t = 0; t < nOfTicks && !state.individuals().isEmpty(); t = t + 1) {
+              state = environment.step(state);
+              distributedEnvironment.step();
+              check(state, distributedEnvironment, name);
+            }
+          }
+          nOfRuns = nOfRuns + 1;
+        }
+      }
+    }
+    System.out.printf("%d runs of up to %d ticks: distributed and local states are the same%n", nOfRuns, nOfTicks);
+  }
+}
@@ -0,0 +1,315 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smpsim-core
+ * %%
+ * Copyright (C) 2018 - 2026 Eric Medvet
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package io.github.ericmedvet.smpsim.core;
+
+import io.github.ericmedvet.smpsim.core.Environment.Configuration;
+import io.github.ericmedvet.smpsim.core.Environment.State;
+import io.github.ericmedvet.smpsim.core.Instruction.Continuation;
+import io.github.ericmedvet.smpsim.core.SlabProtocol.Ranked;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+// the world is split in slabs along the last coordinate, each stepped by one SlabWorker; the workers run in other
+// processes (or threads) and talk with this coordinator through loopback sockets; the resulting states are the
+// same as with Environment.step()
+public class DistributedEnvironment implements AutoCloseable {
+
+  private static final int ACCEPT_TIMEOUT_MILLIS = 60000;
+
+  private final Configuration configuration;
+  private final SparseGrid initialGrid;
+  private final int[] boundaries;
+  private final List<Socket> sockets;
+  private final List<DataInputStream> inputs;
+  private final List<DataOutputStream> outputs;
+  private final List<Process> processes;
+  private long k;
+  private int nOfIndividuals;
+
+  private DistributedEnvironment(
+      Configuration configuration,
+      SparseGrid initialGrid,
+      int[] boundaries,
+      List<Socket> sockets,
+      List<Process> processes,
+      long k,
+      int nOfIndividuals
+  ) throws IOException {
+    this.configuration = configuration;
+    this.initialGrid = initialGrid;
+    this.boundaries = boundaries;
+    this.sockets = sockets;
+    this.processes = processes;
+    this.k = k;
+    this.nOfIndividuals = nOfIndividuals;
+    inputs = new ArrayList<>();
+    outputs = new ArrayList<>();
+    for (Socket socket : sockets) {
+      socket.setTcpNoDelay(true);
+      inputs.add(new DataInputStream(new BufferedInputStream(socket.getInputStream())));
+      outputs.add(new DataOutputStream(new BufferedOutputStream(socket.getOutputStream())));
+    }
+  }
+
+  public enum Mode { THREADS, PROCESSES }
+
+  public static DistributedEnvironment start(
+      State state,
+      List<Instruction> instructions,
+      int nOfSlabs,
+      Mode mode
+  ) throws IOException {
+    Configuration configuration = state.configuration();
+    // slabs would need the data and the occupancy along the borders of the other ones
+    if (configuration.nOfNeighbors() > 0) {
+      throw new IllegalArgumentException(
+          "Unsupported neighborhood for slabs: %s".formatted(configuration.neighborhood())
+      );
+    }
+    int[] boundaries = SlabProtocol.boundaries(configuration.maxLocation(), nOfSlabs);
+    SparseGrid grid = (state.data() instanceof SparseGrid sparseGrid) ? sparseGrid : SparseGrid.of(
+        configuration.maxLocation(),
+        new boolean[configuration.dataSize()],
+        state.data()
+    );
+    List<Socket> sockets = new ArrayList<>();
+    List<Process> processes = new ArrayList<>();
+    try (ServerSocket serverSocket = new ServerSocket(0, nOfSlabs, InetAddress.getLoopbackAddress())) {
+      serverSocket.setSoTimeout(ACCEPT_TIMEOUT_MILLIS);
+      String host = serverSocket.getInetAddress().getHostAddress();
+      int port = serverSocket.getLocalPort();
+      for (int i = 0; i < nOfSlabs; i = i + 1) {
+        switch (mode) {
+          case THREADS -> {
+            Thread thread = new Thread(
+                () -> {
+                  try {
+                    SlabWorker.connect(host, port);
+                  } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                  }
+                },
+                "slab-worker-%d".formatted(i)
+            );
+            thread.setDaemon(true);
+            thread.start();
+          }
+          case PROCESSES -> processes.add(
+              new ProcessBuilder(
+                  Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                  "-cp",
+                  System.getProperty("java.class.path"),
+                  SlabWorker.class.getName(),
+                  host,
+                  Integer.toString(port)
+              ).inheritIO().start()
+          );
+        }
+      }
+      for (int i = 0; i < nOfSlabs; i = i + 1) {
+        sockets.add(serverSocket.accept());
+      }
+    } catch (IOException e) {
+      processes.forEach(Process::destroy);
+      for (Socket socket : sockets) {
+        socket.close();
+      }
+      throw e;
+    }
+    DistributedEnvironment environment = new DistributedEnvironment(
+        configuration,
+        grid,
+        boundaries,
+        sockets,
+        processes,
+        state.k(),
+        state.individuals().size()
+    );
+    // individuals are ranked by their position in the list, which determines the processing order
+    List<List<Ranked>> rankedIndividuals = IntStream.range(0, nOfSlabs)
+        .mapToObj(_ -> (List<Ranked>) new ArrayList<Ranked>())
+        .toList();
+    for (int i = 0; i < state.individuals().size(); i = i + 1) {
+      Individual individual = state.individuals().get(i);
+      rankedIndividuals.get(SlabProtocol.slab(boundaries, individual.location()))
+          .add(
+              new Ranked(
+                  i,
+                  new Individual(individual.location(), individual.kOfBirth(), individual.memory().clone())
+              )
+          );
+    }
+    // each worker only gets the cells of its slab
+    List<Map<Location, boolean[]>> slabCells = IntStream.range(0, nOfSlabs)
+        .mapToObj(_ -> (Map<Location, boolean[]>) new HashMap<Location, boolean[]>())
+        .toList();
+    grid.written()
+        .forEach((location, value) -> slabCells.get(SlabProtocol.slab(boundaries, location)).put(location, value));
+    for (int i = 0; i < nOfSlabs; i = i + 1) {
+      DataOutputStream output = environment.outputs.get(i);
+      output.writeByte(SlabProtocol.INIT);
+      StateSerializer.writeConfiguration(output, configuration);
+      output.writeLong(state.k());
+      output.writeInt(boundaries[i]);
+      output.writeInt(boundaries[i + 1]);
+      output.writeInt(instructions.size());
+      for (Instruction instruction : instructions) {
+        SlabProtocol.writeInstruction(output, instruction);
+      }
+      new SparseGrid(configuration.maxLocation(), grid.defaultValue()).with(slabCells.get(i)).writeTo(output);
+      SlabProtocol.writeRankedIndividuals(output, rankedIndividuals.get(i));
+      output.flush();
+    }
+    return environment;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      for (DataOutputStream output : outputs) {
+        output.writeByte(SlabProtocol.STOP);
+        output.flush();
+      }
+      for (Process process : processes) {
+        process.waitFor();
+      }
+    } catch (InterruptedException e) {
+      processes.forEach(Process::destroy);
+      Thread.currentThread().interrupt();
+    } finally {
+      for (Socket socket : sockets) {
+        socket.close();
+      }
+    }
+  }
+
+  public long k() {
+    return k;
+  }
+
+  public int nOfIndividuals() {
+    return nOfIndividuals;
+  }
+
+  public State state() throws IOException {
+    for (DataOutputStream output : outputs) {
+      output.writeByte(SlabProtocol.GATHER);
+      output.flush();
+    }
+    Map<Location, boolean[]> cells = new HashMap<>();
+    List<Ranked> rankedIndividuals = new ArrayList<>();
+    for (DataInputStream input : inputs) {
+      int nOfCells = input.readInt();
+      for (int i = 0; i < nOfCells; i = i + 1) {
+        Location location = StateSerializer.readLocation(input, configuration.maxLocation().coords().length);
+        cells.put(location, Utils.wordToBitString(input.readLong(), configuration.dataSize()));
+      }
+      rankedIndividuals.addAll(SlabProtocol.readRankedIndividuals(input, configuration));
+    }
+    return new State(
+        k,
+        initialGrid.with(cells),
+        rankedIndividuals.stream().sorted(Comparator.comparingInt(Ranked::position)).map(Ranked::individual).toList(),
+        configuration
+    );
+  }
+
+  public void step() throws IOException {
+    int nOfSlabs = outputs.size();
+    for (DataOutputStream output : outputs) {
+      output.writeByte(SlabProtocol.CONTINUATIONS);
+      output.flush();
+    }
+    // gather continuations and decide replications globally, in position order
+    Continuation[] continuations = new Continuation[nOfIndividuals];
+    int[][] slabPositions = new int[nOfSlabs][];
+    for (int s = 0; s < nOfSlabs; s = s + 1) {
+      DataInputStream input = inputs.get(s);
+      slabPositions[s] = new int[input.readInt()];
+      for (int i = 0; i < slabPositions[s].length; i = i + 1) {
+        slabPositions[s][i] = input.readInt();
+        continuations[slabPositions[s][i]] = Continuation.values()[input.readByte()];
+      }
+    }
+    boolean[] replications = Environment.replications(
+        continuations,
+        configuration.maxNOfIndividuals()
+    );
+    // survivors keep their relative order, children follow them
+    int[] newPositions = new int[nOfIndividuals];
+    int[] childPositions = new int[nOfIndividuals];
+    int nOfSurvivors = 0;
+    for (int i = 0; i < nOfIndividuals; i = i + 1) {
+      if (!continuations[i].equals(Continuation.DEATH)) {
+        newPositions[i] = nOfSurvivors;
+        nOfSurvivors = nOfSurvivors + 1;
+      }
+    }
+    int nOfChildren = 0;
+    for (int i = 0; i < nOfIndividuals; i = i + 1) {
+      if (replications[i]) {
+        childPositions[i] = nOfSurvivors + nOfChildren;
+        nOfChildren = nOfChildren + 1;
+      }
+    }
+    for (int s = 0; s < nOfSlabs; s = s + 1) {
+      DataOutputStream output = outputs.get(s);
+      output.writeByte(SlabProtocol.EXECUTE);
+      output.writeInt(slabPositions[s].length);
+      for (int position : slabPositions[s]) {
+        output.writeBoolean(replications[position]);
+        output.writeInt(newPositions[position]);
+        output.writeInt(childPositions[position]);
+      }
+      output.flush();
+    }
+    // route migrants to the slabs they moved to
+    List<List<Ranked>> immigrants = IntStream.range(0, nOfSlabs)
+        .mapToObj(_ -> (List<Ranked>) new ArrayList<Ranked>())
+        .toList();
+    for (DataInputStream input : inputs) {
+      for (Ranked emigrant : SlabProtocol.readRankedIndividuals(input, configuration)) {
+        immigrants.get(SlabProtocol.slab(boundaries, emigrant.individual().location())).add(emigrant);
+      }
+    }
+    for (int s = 0; s < nOfSlabs; s = s + 1) {
+      DataOutputStream output = outputs.get(s);
+      output.writeByte(SlabProtocol.IMMIGRATE);
+      SlabProtocol.writeRankedIndividuals(output, immigrants.get(s));
+      output.flush();
+    }
+    k = k + 1;
+    nOfIndividuals = nOfSurvivors + nOfChildren;
+  }
+}
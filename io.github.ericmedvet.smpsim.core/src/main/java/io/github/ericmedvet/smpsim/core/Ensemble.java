@@ -0,0 +1,173 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smpsim-core
+ * %%
+ * Copyright (C) 2018 - 2026 Eric Medvet
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package io.github.ericmedvet.smpsim.core;
+
+import io.github.ericmedvet.smpsim.core.Environment.Buffers;
+import io.github.ericmedvet.smpsim.core.Environment.Configuration;
+import io.github.ericmedvet.smpsim.core.Environment.State;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+// many replicas of one environment stepped in lockstep: they share the instructions and the configuration and
+// differ only in data and population; data is dense and replica-major, hence suited to small worlds; the environment
+// cannot have an observer, as the events of the replicas would be mixed
+public class Ensemble {
+
+  private final Environment environment;
+  private final int nOfCells;
+  // the cells of the replica r are at [r*nOfCells, (r+1)*nOfCells)
+  private final long[] data;
+  private final Population[] populations;
+  // the neighbors of each cell, shared by the replicas
+  private final int[] neighborTable;
+  private final Buffers buffers;
+  private long k;
+
+  public Ensemble(Environment environment, List<State> states) {
+    if (environment.hasObserver()) {
+      throw new IllegalArgumentException("Unsupported observer: the replicas would share it");
+    }
+    this.environment = environment;
+    Configuration configuration = environment.configuration();
+    long cells = 1;
+    for (int c : configuration.maxLocation().coords()) {
+      cells = cells * c;
+    }
+    if (states.isEmpty()) {
+      throw new IllegalArgumentException("No replicas");
+    }
+    if (cells * states.size() > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException(
+          "Too many cells: %d*%d > %d".formatted(cells, states.size(), Integer.MAX_VALUE)
+      );
+    }
+    nOfCells = (int) cells;
+    data = new long[nOfCells * states.size()];
+    populations = new Population[states.size()];
+    k = states.getFirst().k();
+    for (int r = 0; r < states.size(); r = r + 1) {
+      State state = states.get(r);
+      if (!state.configuration().equals(configuration)) {
+        throw new IllegalArgumentException(
+            "Wrong configuration of replica %d: %s != %s".formatted(r, state.configuration(), configuration)
+        );
+      }
+      if (state.k() != k) {
+        throw new IllegalArgumentException("Wrong k of replica %d: %d != %d".formatted(r, state.k(), k));
+      }
+      for (int c = 0; c < nOfCells; c = c + 1) {
+        data[r * nOfCells + c] = (state.data() instanceof SparseGrid sparseGrid) ? sparseGrid.word(c) : Utils
+            .bitStringToWord(state.data().get(Location.ofIndex(c, configuration.maxLocation())));
+      }
+      populations[r] = Population.of(
+          configuration.maxLocation(),
+          configuration.individualMemorySize(),
+          state.individuals()
+      );
+    }
+    neighborTable = (configuration.nOfNeighbors() > 0) ? environment.neighborTable() : null;
+    buffers = new Buffers();
+  }
+
+  // one replica for each data supplier, all starting with the same individuals
+  public static Ensemble of(Environment environment, List<IntFunction<boolean[]>> dataSuppliers) {
+    return new Ensemble(
+        environment,
+        dataSuppliers.stream().map(s -> environment.configuration().initialState(s)).toList()
+    );
+  }
+
+  public long k() {
+    return k;
+  }
+
+  public int nOfAliveReplicas() {
+    int n = 0;
+    for (Population population : populations) {
+      n = n + (population.isEmpty() ? 0 : 1);
+    }
+    return n;
+  }
+
+  public int nOfIndividuals(int replica) {
+    return populations[replica].size();
+  }
+
+  public int nOfReplicas() {
+    return populations.length;
+  }
+
+  public Ensemble run(long maxK) {
+    while (k <= maxK && nOfAliveReplicas() > 0) {
+      step();
+    }
+    return this;
+  }
+
+  public State state(int replica) {
+    Configuration configuration = environment.configuration();
+    long[] cells = new long[nOfCells];
+    long[] words = new long[nOfCells];
+    int n = 0;
+    for (int c = 0; c < nOfCells; c = c + 1) {
+      if (data[replica * nOfCells + c] != 0) {
+        cells[n] = c;
+        words[n] = data[replica * nOfCells + c];
+        n = n + 1;
+      }
+    }
+    return new State(
+        k,
+        new SparseGrid(configuration.maxLocation(), new boolean[configuration.dataSize()]).with(cells, words, n),
+        populations[replica].copy(),
+        configuration
+    );
+  }
+
+  public List<State> states() {
+    List<State> states = new ArrayList<>(populations.length);
+    for (int r = 0; r < populations.length; r = r + 1) {
+      states.add(state(r));
+    }
+    return states;
+  }
+
+  public void step() {
+    for (int r = 0; r < populations.length; r = r + 1) {
+      Population population = populations[r];
+      // extinct replicas do not change anymore
+      if (population.isEmpty()) {
+        continue;
+      }
+      int offset = r * nOfCells;
+      environment.load(population, buffers, c -> data[offset + (int) c], neighborTable);
+      boolean[] replications = Environment.replications(
+          environment.continuations(buffers, population.size()),
+          environment.configuration().maxNOfIndividuals()
+      );
+      environment.execute(population, buffers, replications, k);
+      for (int i = 0; i < buffers.nOfWrites(); i = i + 1) {
+        data[offset + (int) buffers.writtenCell(i)] = buffers.writtenWord(i);
+      }
+    }
+    k = k + 1;
+  }
+}
@@ -20,25 +20,45 @@
 package io.github.ericmedvet.smpsim.core;
 
 import io.github.ericmedvet.smpsim.core.Instruction.Continuation;
-import io.github.ericmedvet.smpsim.core.Instruction.Movement;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.function.IntFunction;
+import java.util.function.LongUnaryOperator;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-import java.util.stream.Stream;
 
 public class Environment {
 
   private final Configuration configuration;
   private final List<Instruction> instructions;
+  private final StepObserver observer;
+  // flattened views of the instructions and of the configuration, used by the stepping
+  private final Continuation[] continuations;
+  private final int[][] moves;
+  private final long[] strides;
+  private final long selectorMask;
+  private final long occupancyMask;
+  private final long dataMask;
+  private final long memoryMask;
+  private final int[][] neighborOffsets;
+  // the linear offset of each neighbor and the borders it is beyond of, as by borders()
+  private final long[] neighborDeltas;
+  private final long[] neighborBorders;
+  private final long neighborDataMask;
+  private final int neighborsShift;
 
   public Environment(Configuration configuration, List<Instruction> instructions) {
+    this(configuration, instructions, null);
+  }
+
+  public Environment(Configuration configuration, List<Instruction> instructions, StepObserver observer) {
     this.configuration = configuration;
     this.instructions = instructions;
+    this.observer = observer;
     // check instructions ioSize consistency
     for (Instruction instruction : instructions) {
       if (instruction.inputSize() != configuration.instructionInputSize() || instruction.outputSize() != configuration
@@ -54,6 +74,61 @@ public class Environment {
         );
       }
     }
+    // check packing feasibility
+    if (Utils.ceilLog2(instructions.size()) > configuration.dataSize) {
+      throw new IllegalArgumentException(
+          "Too many instructions for data size: %d > 2^%d".formatted(instructions.size(), configuration.dataSize)
+      );
+    }
+    if (configuration.instructionOutputSize() > Long.SIZE) {
+      throw new IllegalArgumentException(
+          "Wrong instruction output size: %d > %d".formatted(configuration.instructionOutputSize(), Long.SIZE)
+      );
+    }
+    int nOfDimensions = configuration.maxLocation.coords().length;
+    continuations = new Continuation[instructions.size()];
+    moves = new int[instructions.size()][nOfDimensions];
+    for (int i = 0; i < instructions.size(); i = i + 1) {
+      continuations[i] = instructions.get(i).continuation();
+      for (int j = 0; j < nOfDimensions; j = j + 1) {
+        moves[i][j] = switch (instructions.get(i).movements().get(j)) {
+          case STAY -> 0;
+          case DECREASE -> -1;
+          case INCREASE -> 1;
+        };
+      }
+    }
+    strides = new long[nOfDimensions];
+    long stride = 1;
+    for (int i = 0; i < nOfDimensions; i = i + 1) {
+      strides[i] = stride;
+      stride = stride * configuration.maxLocation.coords()[i];
+    }
+    selectorMask = mask(Utils.ceilLog2(instructions.size()));
+    occupancyMask = mask(Utils.ceilLog2(configuration.maxNOfIndividuals));
+    dataMask = mask(configuration.dataSize);
+    memoryMask = mask(configuration.individualMemorySize);
+    neighborOffsets = configuration.neighborhood.offsets(nOfDimensions);
+    if (neighborOffsets.length > 0 && nOfDimensions > Long.SIZE / 2) {
+      throw new IllegalArgumentException(
+          "Too many dimensions for a neighborhood: %d > %d".formatted(nOfDimensions, Long.SIZE / 2)
+      );
+    }
+    neighborDeltas = new long[neighborOffsets.length];
+    neighborBorders = new long[neighborOffsets.length];
+    for (int j = 0; j < neighborOffsets.length; j = j + 1) {
+      for (int i = 0; i < nOfDimensions; i = i + 1) {
+        neighborDeltas[j] = neighborDeltas[j] + neighborOffsets[j][i] * strides[i];
+        if (neighborOffsets[j][i] < 0) {
+          neighborBorders[j] = neighborBorders[j] | (1L << (2 * i));
+        } else if (neighborOffsets[j][i] > 0) {
+          neighborBorders[j] = neighborBorders[j] | (1L << (2 * i + 1));
+        }
+      }
+    }
+    neighborDataMask = mask(configuration.neighborDataSize);
+    neighborsShift = configuration.dataSize + Utils.ceilLog2(configuration.maxNOfIndividuals) + configuration
+        .individualMemorySize;
   }
 
   private static int coord(int i, int bound, boolean toroidal) {
@@ -66,127 +141,415 @@ public class Environment {
     return i;
   }
 
-  private static Location update(
-      Location location,
-      List<Movement> movements,
-      Location maxLocation,
-      boolean toroidal
-  ) {
-    if (movements.size() != location.coords().length) {
-      throw new IllegalArgumentException(
-          "Wrong size of movements: %d != %d".formatted(
-              movements.size(),
-              location.coords().length
-          )
-      );
+  private static long mask(int size) {
+    return (size >= Long.SIZE) ? -1L : ((1L << size) - 1);
+  }
+
+  // for each dimension, bit 2i is set if the cell is on the lower border and bit 2i+1 if it is on the upper one
+  private long borders(long cell) {
+    long borders = 0;
+    for (int i = 0; i < strides.length; i = i + 1) {
+      int bound = configuration.maxLocation.coords()[i];
+      int c = (int) (cell % bound);
+      cell = cell / bound;
+      if (c == 0) {
+        borders = borders | (1L << (2 * i));
+      }
+      if (c == bound - 1) {
+        borders = borders | (1L << (2 * i + 1));
+      }
     }
-    int[] coords = Arrays.copyOf(location.coords(), location.coords().length);
-    for (int i = 0; i < location.coords().length; i = i + 1) {
-      coords[i] = switch (movements.get(i)) {
-        case DECREASE -> coord(coords[i] - 1, maxLocation.coords()[i], toroidal);
-        case INCREASE -> coord(coords[i] + 1, maxLocation.coords()[i], toroidal);
-        case STAY -> coord(coords[i], maxLocation.coords()[i], toroidal);
-      };
+    return borders;
+  }
+
+  public Configuration configuration() {
+    return configuration;
+  }
+
+  boolean hasObserver() {
+    return observer != null;
+  }
+
+  public List<Instruction> instructions() {
+    return instructions;
+  }
+
+  public State run(State state, Predicate<State> termination) {
+    return run(state, termination, _ -> {
+    });
+  }
+
+  public State run(State state, Predicate<State> termination, Consumer<State> listener) {
+    while (!termination.test(state)) {
+      listener.accept(state);
+      state = step(state);
     }
-    return new Location(coords);
+    return state;
   }
 
-  public State step(State state) {
-    record AgedData(long kOfBirth, boolean[] bitString) {
-
-    }
-    List<Integer> toRemoveIndividuals = new ArrayList<>();
-    List<Individual> toAddIndividuals = new ArrayList<>();
-    Map<Location, AgedData> changedData = new HashMap<>();
-    // iterate over individuals
-    Map<Location, boolean[]> occupancy = state.individuals.stream()
-        .collect(
-            Collectors.groupingBy(
-                Individual::location,
-                Collectors.collectingAndThen(
-                    Collectors.counting(),
-                    n -> Utils.intToBitString(n.intValue(), configuration.maxNOfIndividuals)
-                )
-            )
-        );
-    for (int i = 0; i < state.individuals.size(); i = i + 1) {
-      Individual individual = state.individuals.get(i);
-      boolean[] lData = state.data.get(individual.location());
-      int instructionIndex = Utils.bitStringToInt(
-          Utils.subBitString(lData, 0, Utils.ceilLog2(instructions.size()))
-      );
-      Instruction instruction = instructions.get(instructionIndex % instructions.size());
+  // replications are granted in order, as long as the population is below the max size
+  static boolean[] replications(Continuation[] continuations, int maxNOfIndividuals) {
+    boolean[] replications = new boolean[continuations.length];
+    int nOfRemoved = 0;
+    int nOfAdded = 0;
+    for (int i = 0; i < continuations.length; i = i + 1) {
+      if (continuations[i].equals(Continuation.DEATH)) {
+        nOfRemoved = nOfRemoved + 1;
+      } else if (continuations[i].equals(Continuation.REPLICATION) && (continuations.length - nOfRemoved + nOfAdded)
+          < maxNOfIndividuals) {
+        replications[i] = true;
+        nOfAdded = nOfAdded + 1;
+      }
+    }
+    return replications;
+  }
+
+  Continuation[] continuations(Buffers buffers, int n) {
+    Continuation[] populationContinuations = new Continuation[n];
+    for (int i = 0; i < n; i = i + 1) {
+      populationContinuations[i] = continuations[instructionIndex(buffers.words[i])];
+    }
+    return populationContinuations;
+  }
+
+  Continuation[] continuations(SparseGrid grid, Population population) {
+    Buffers buffers = new Buffers();
+    load(grid, population, buffers);
+    return continuations(buffers, population.size());
+  }
+
+  // individuals are processed in the given order and the population is modified in place: survivors keep their
+  // order and children are appended; all the individuals sharing a location must be given, with the data words
+  // under them already loaded in the buffers; the writes are left in the buffers
+  void execute(Population population, Buffers buffers, boolean[] replications, long k) {
+    int n = population.size();
+    for (int i = 0; i < n; i = i + 1) {
+      buffers.occupancy.increment(population.cell(i));
+    }
+    // the oldest writer of a cell wins, the first processed one on ties
+    int nOfSurvivors = 0;
+    int nOfChildren = 0;
+    for (int i = 0; i < n; i = i + 1) {
+      long cell = population.cell(i);
+      long kOfBirth = population.kOfBirth(i);
+      long data = buffers.words[i];
+      int instructionIndex = instructionIndex(data);
       // check death or duplication
-      if (instruction.continuation().equals(Continuation.DEATH)) {
-        toRemoveIndividuals.add(i);
+      if (continuations[instructionIndex].equals(Continuation.DEATH)) {
+        if (observer != null) {
+          observer.processed(instructionIndex, -1);
+        }
         continue;
       }
-      if (instruction.continuation().equals(Continuation.REPLICATION) && (state.individuals.size() - toRemoveIndividuals
-          .size() + toAddIndividuals.size()) < configuration.maxNOfIndividuals) {
-        toAddIndividuals.add(
-            new Individual(
-                individual.location(),
-                state.k,
-                new boolean[configuration.individualMemorySize]
-            )
-        );
+      if (observer != null && continuations[instructionIndex].equals(Continuation.REPLICATION)) {
+        observer.replicated(instructionIndex, replications[i]);
+      }
+      if (replications[i]) {
+        buffers.childCells[nOfChildren] = cell;
+        nOfChildren = nOfChildren + 1;
       }
       // process data
-      boolean[] input = Utils.concat(
-          lData,
-          occupancy.get(individual.location()),
-          individual.memory()
-      );
-      boolean[] output = instruction.apply(input);
-      boolean[] newData = Utils.subBitString(output, 0, lData.length);
-      boolean[] newMemory = Utils.subBitString(
-          output,
-          newData.length,
-          configuration.individualMemorySize
-      );
-      changedData.merge(
-          individual.location(),
-          new AgedData(individual.kOfBirth(), newData),
-          (oldAgedData, newAgedData) -> (oldAgedData.kOfBirth <= newAgedData.kOfBirth) ? oldAgedData : newAgedData
+      long occupancy = buffers.occupancy.get(cell, 0) & occupancyMask;
+      int input = (int) (data | (occupancy << configuration.dataSize) | (population.memory(i) << (configuration.dataSize
+          + Long.bitCount(occupancyMask))));
+      // each neighbor adds its (low) data bits and whether it is occupied
+      for (int j = 0; j < neighborOffsets.length; j = j + 1) {
+        long neighborCell = buffers.neighborCells[i * neighborOffsets.length + j];
+        if (neighborCell >= 0) {
+          boolean isOccupied = buffers.occupancy.get(neighborCell, 0) > 0;
+          long neighbor = (buffers.neighborWords[i * neighborOffsets.length + j] & neighborDataMask) | (isOccupied
+              ? (1L << configuration.neighborDataSize) : 0);
+          input = input | (int) (neighbor << (neighborsShift + j * (configuration.neighborDataSize + 1)));
+        }
+      }
+      long output = output(instructionIndex, input);
+      if (observer != null) {
+        observer.processed(instructionIndex, input);
+      }
+      int slot = buffers.writes.get(cell, -1);
+      if (slot < 0) {
+        buffers.writes.put(cell, buffers.nOfWrites);
+        buffers.writtenCells[buffers.nOfWrites] = cell;
+        buffers.overwrittenWords[buffers.nOfWrites] = data;
+        buffers.writtenWords[buffers.nOfWrites] = output & dataMask;
+        buffers.writerKOfBirths[buffers.nOfWrites] = kOfBirth;
+        buffers.nOfWrites = buffers.nOfWrites + 1;
+      } else if (kOfBirth < buffers.writerKOfBirths[slot]) {
+        buffers.writtenWords[slot] = output & dataMask;
+        buffers.writerKOfBirths[slot] = kOfBirth;
+      }
+      population.set(
+          nOfSurvivors,
+          move(cell, instructionIndex),
+          kOfBirth,
+          (output >>> configuration.dataSize) & memoryMask
       );
-      individual.setMemory(newMemory);
-      individual.setLocation(
-          update(
-              individual.location(),
-              instruction.movements(),
-              configuration.maxLocation,
-              configuration.isToroidal
-          )
+      nOfSurvivors = nOfSurvivors + 1;
+    }
+    population.truncate(nOfSurvivors);
+    for (int i = 0; i < nOfChildren; i = i + 1) {
+      population.add(buffers.childCells[i], k, 0);
+    }
+    if (observer != null) {
+      for (int i = 0; i < buffers.nOfWrites; i = i + 1) {
+        observer.written(buffers.writtenCells[i], buffers.overwrittenWords[i], buffers.writtenWords[i]);
+      }
+      observer.stepped(k, n, buffers.occupancy.size(), nOfChildren, n - nOfSurvivors);
+    }
+  }
+
+  SparseGrid execute(SparseGrid grid, Population population, boolean[] replications, long k) {
+    Buffers buffers = new Buffers();
+    load(grid, population, buffers);
+    execute(population, buffers, replications, k);
+    return grid.with(buffers.writtenCells, buffers.writtenWords, buffers.nOfWrites);
+  }
+
+  private int instructionIndex(long data) {
+    return (int) ((data & selectorMask) % instructions.size());
+  }
+
+  private void load(SparseGrid grid, Population population, Buffers buffers) {
+    load(population, buffers, grid::word);
+  }
+
+  void load(Population population, Buffers buffers, LongUnaryOperator reader) {
+    load(population, buffers, reader, null);
+  }
+
+  // fills the buffers with the data words under the individuals and, if any, around them; neighbor cells are taken
+  // from the table, if any, as built by neighborTable(), or computed with the linear offsets away from the borders
+  void load(Population population, Buffers buffers, LongUnaryOperator reader, int[] neighborTable) {
+    long[] words = buffers.words(population.size(), neighborOffsets.length);
+    for (int i = 0; i < population.size(); i = i + 1) {
+      long cell = population.cell(i);
+      words[i] = reader.applyAsLong(cell);
+      long borders = (neighborOffsets.length == 0 || neighborTable != null) ? 0 : borders(cell);
+      for (int j = 0; j < neighborOffsets.length; j = j + 1) {
+        long neighborCell;
+        if (neighborTable != null) {
+          neighborCell = neighborTable[(int) cell * neighborOffsets.length + j];
+        } else if ((borders & neighborBorders[j]) == 0) {
+          neighborCell = cell + neighborDeltas[j];
+        } else {
+          neighborCell = neighbor(cell, j);
+        }
+        buffers.neighborCells[i * neighborOffsets.length + j] = neighborCell;
+        buffers.neighborWords[i * neighborOffsets.length + j] = (neighborCell < 0) ? 0 : reader.applyAsLong(
+            neighborCell
+        );
+      }
+    }
+  }
+
+  private long move(long cell, int instructionIndex) {
+    long newCell = cell;
+    for (int i = 0; i < strides.length; i = i + 1) {
+      if (moves[instructionIndex][i] != 0) {
+        int bound = configuration.maxLocation.coords()[i];
+        int c = (int) ((cell / strides[i]) % bound);
+        newCell = newCell + (coord(c + moves[instructionIndex][i], bound, configuration.isToroidal) - c) * strides[i];
+      }
+    }
+    return newCell;
+  }
+
+  // the j-th neighbor of the cell, or -1 if it is beyond a non-toroidal border
+  private long neighbor(long cell, int j) {
+    long neighborCell = cell;
+    for (int i = 0; i < strides.length; i = i + 1) {
+      if (neighborOffsets[j][i] != 0) {
+        int bound = configuration.maxLocation.coords()[i];
+        int c = (int) ((cell / strides[i]) % bound);
+        int nc = c + neighborOffsets[j][i];
+        if (nc < 0 || nc >= bound) {
+          if (!configuration.isToroidal) {
+            return -1;
+          }
+          nc = (nc < 0) ? (bound - 1) : 0;
+        }
+        neighborCell = neighborCell + (nc - c) * strides[i];
+      }
+    }
+    return neighborCell;
+  }
+
+  // the neighbors of all the cells, as by neighbor(), cell by cell: for small worlds
+  int[] neighborTable() {
+    long nOfCells = strides[strides.length - 1] * configuration.maxLocation.coords()[strides.length - 1];
+    if (nOfCells * neighborOffsets.length > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException(
+          "Too many neighbor cells: %d*%d > %d".formatted(nOfCells, neighborOffsets.length, Integer.MAX_VALUE)
       );
     }
-    // apply changes
-    List<Integer> toKeepIndividualIndexes = IntStream.range(0, state.individuals.size())
-        .boxed()
-        .filter(i -> !toRemoveIndividuals.contains(i))
-        .toList();
-    Map<Location, boolean[]> newData = new HashMap<>(state.data);
-    changedData.forEach((l, agedData) -> newData.put(l, agedData.bitString));
-    return new State(
-        state.k + 1,
-        newData,
-        Stream.concat(
-            toKeepIndividualIndexes.stream().map(state.individuals::get),
-            toAddIndividuals.stream()
-        ).toList(),
-        configuration
+    int[] table = new int[(int) nOfCells * neighborOffsets.length];
+    for (int cell = 0; cell < nOfCells; cell = cell + 1) {
+      for (int j = 0; j < neighborOffsets.length; j = j + 1) {
+        table[cell * neighborOffsets.length + j] = (int) neighbor(cell, j);
+      }
+    }
+    return table;
+  }
+
+  private long output(int instructionIndex, int input) {
+    List<boolean[]> semantics = instructions.get(instructionIndex).semantics();
+    if (semantics instanceof WordSemantics wordSemantics) {
+      return wordSemantics.word(input);
+    }
+    return Utils.bitStringToWord(semantics.get(input));
+  }
+
+  // the input state is not modified; the new state has a sparse grid and a population, whatever the input
+  public State step(State state) {
+    SparseGrid grid = (state.data instanceof SparseGrid sparseGrid) ? sparseGrid : SparseGrid.of(
+        configuration.maxLocation,
+        new boolean[configuration.dataSize],
+        state.data
+    );
+    Population population;
+    if (state.individuals instanceof Population statePopulation && statePopulation.maxLocation()
+        .equals(configuration.maxLocation) && statePopulation.memorySize() == configuration.individualMemorySize) {
+      population = statePopulation.copy();
+    } else {
+      population = Population.of(configuration.maxLocation, configuration.individualMemorySize, state.individuals);
+    }
+    Buffers buffers = new Buffers();
+    load(grid, population, buffers);
+    boolean[] replications = replications(
+        continuations(buffers, population.size()),
+        configuration.maxNOfIndividuals
     );
+    execute(population, buffers, replications, state.k);
+    SparseGrid newGrid = grid.with(buffers.writtenCells, buffers.writtenWords, buffers.nOfWrites);
+    return new State(state.k + 1, newGrid, population, configuration);
+  }
+
+  // scratch space of the stepping, reusable across steps by one thread at a time
+  static final class Buffers {
+
+    private final LongIntMap occupancy = new LongIntMap(0);
+    private final LongIntMap writes = new LongIntMap(0);
+    private long[] words = new long[0];
+    private long[] writtenCells = new long[0];
+    private long[] overwrittenWords = new long[0];
+    private long[] writtenWords = new long[0];
+    private long[] writerKOfBirths = new long[0];
+    private long[] childCells = new long[0];
+    private long[] neighborCells = new long[0];
+    private long[] neighborWords = new long[0];
+    private int nOfWrites;
+
+    int nOfWrites() {
+      return nOfWrites;
+    }
+
+    // to be filled with the data words under the n individuals, before stepping them
+    private long[] words(int n, int nOfNeighbors) {
+      if (neighborCells.length < n * nOfNeighbors) {
+        neighborCells = new long[Math.max(n * nOfNeighbors, neighborCells.length * 2)];
+        neighborWords = new long[neighborCells.length];
+      }
+      return words(n);
+    }
+
+    private long[] words(int n) {
+      if (words.length < n) {
+        int capacity = Math.max(n, words.length * 2);
+        words = new long[capacity];
+        writtenCells = new long[capacity];
+        overwrittenWords = new long[capacity];
+        writtenWords = new long[capacity];
+        writerKOfBirths = new long[capacity];
+        childCells = new long[capacity];
+      }
+      occupancy.clear();
+      writes.clear();
+      nOfWrites = 0;
+      return words;
+    }
+
+    long writtenCell(int i) {
+      return writtenCells[i];
+    }
+
+    long writtenWord(int i) {
+      return writtenWords[i];
+    }
+  }
+
+  public enum Neighborhood {
+    NONE, VON_NEUMANN, MOORE;
+
+    // the offsets of the neighbors, in a fixed order
+    public int[][] offsets(int nOfDimensions) {
+      List<int[]> offsets = new ArrayList<>();
+      switch (this) {
+        case NONE -> {
+        }
+        case VON_NEUMANN -> {
+          for (int i = 0; i < nOfDimensions; i = i + 1) {
+            for (int d : new int[]{-1, 1}) {
+              int[] offset = new int[nOfDimensions];
+              offset[i] = d;
+              offsets.add(offset);
+            }
+          }
+        }
+        case MOORE -> {
+          for (int i = 0; i < Math.powExact(3, nOfDimensions); i = i + 1) {
+            int[] offset = new int[nOfDimensions];
+            int code = i;
+            for (int j = 0; j < nOfDimensions; j = j + 1) {
+              offset[j] = code % 3 - 1;
+              code = code / 3;
+            }
+            if (Arrays.stream(offset).anyMatch(o -> o != 0)) {
+              offsets.add(offset);
+            }
+          }
+        }
+      }
+      return offsets.toArray(int[][]::new);
+    }
   }
 
+  // with a neighborhood, the input of instructions also has, for each neighbor, its neighborDataSize low data bits
+  // and one bit telling if it is occupied
   public record Configuration(
       Location maxLocation,
       boolean isToroidal,
       int dataSize,
       int individualMemorySize,
-      int maxNOfIndividuals
+      int maxNOfIndividuals,
+      Neighborhood neighborhood,
+      int neighborDataSize
   ) {
 
+    public Configuration {
+      if (neighborDataSize < 0 || neighborDataSize > dataSize) {
+        throw new IllegalArgumentException(
+            "Wrong neighbor data size: %d not in [0,%d]".formatted(neighborDataSize, dataSize)
+        );
+      }
+    }
+
+    public Configuration(
+        Location maxLocation,
+        boolean isToroidal,
+        int dataSize,
+        int individualMemorySize,
+        int maxNOfIndividuals
+    ) {
+      this(maxLocation, isToroidal, dataSize, individualMemorySize, maxNOfIndividuals, Neighborhood.NONE, 0);
+    }
+
     public int instructionInputSize() {
-      return dataSize + Utils.ceilLog2(maxNOfIndividuals) + individualMemorySize;
+      return dataSize + Utils.ceilLog2(maxNOfIndividuals) + individualMemorySize + nOfNeighbors() * (neighborDataSize
+          + 1);
+    }
+
+    public int nOfNeighbors() {
+      return neighborhood.offsets(maxLocation.coords().length).length;
     }
 
     public int instructionOutputSize() {
@@ -194,10 +557,9 @@ public class Environment {
     }
 
     private void checkState(State state) {
-      // check location consistency
-      state.data()
-          .keySet()
-          .forEach(
+      // check location consistency (sparse grids store only locations within their bounds)
+      Set<Location> locations = (state.data instanceof SparseGrid) ? Set.of() : state.data.keySet();
+      locations.forEach(
               l -> {
                 if (!l.isWithin(maxLocation)) {
                   throw new IllegalArgumentException(
@@ -207,16 +569,29 @@ public class Environment {
               }
           );
       // check location recall
-      List<Location> missingLocations = maxLocation.boundedLocations()
-          .stream()
-          .filter(
-              key -> !state.data.containsKey(key)
-          )
-          .toList();
-      if (!missingLocations.isEmpty()) {
-        throw new IllegalArgumentException(
-            "Missing locations in initial state: %s".formatted(missingLocations)
-        );
+      if (state.data instanceof SparseGrid sparseGrid) {
+        if (!sparseGrid.maxLocation().equals(maxLocation)) {
+          throw new IllegalArgumentException(
+              "Wrong grid bounds: %s != %s".formatted(sparseGrid.maxLocation(), maxLocation)
+          );
+        }
+        if (sparseGrid.dataSize() != dataSize) {
+          throw new IllegalArgumentException(
+              "Wrong grid data size: %d != %d".formatted(sparseGrid.dataSize(), dataSize)
+          );
+        }
+      } else {
+        List<Location> missingLocations = maxLocation.boundedLocations()
+            .stream()
+            .filter(
+                key -> !state.data.containsKey(key)
+            )
+            .toList();
+        if (!missingLocations.isEmpty()) {
+          throw new IllegalArgumentException(
+              "Missing locations in initial state: %s".formatted(missingLocations)
+          );
+        }
       }
       // check individuals locations
       state.individuals().forEach(i -> {
@@ -242,6 +617,24 @@ public class Environment {
       });
     }
 
+    private List<Individual> initialIndividuals() {
+      return Population.of(
+          maxLocation,
+          individualMemorySize,
+          List.of(
+              new Individual(
+                  new Location(
+                      Arrays.stream(maxLocation.coords())
+                          .map(c -> c / 2)
+                          .toArray()
+                  ),
+                  0,
+                  new boolean[individualMemorySize()]
+              )
+          )
+      );
+    }
+
     public State initialState(IntFunction<boolean[]> dataSupplier) {
       State state = new State(
           0,
@@ -253,17 +646,27 @@ public class Environment {
                       _ -> dataSupplier.apply(dataSize)
                   )
               ),
-          List.of(
-              new Individual(
-                  new Location(
-                      Arrays.stream(maxLocation.coords())
-                          .map(c -> c / 2)
-                          .toArray()
-                  ),
-                  0,
-                  new boolean[individualMemorySize()]
-              )
-          ),
+          initialIndividuals(),
+          this
+      );
+      checkState(state);
+      return state;
+    }
+
+    public State lazyInitialState() {
+      return lazyInitialState(new boolean[dataSize]);
+    }
+
+    public State lazyInitialState(boolean[] defaultData) {
+      if (defaultData.length != dataSize) {
+        throw new IllegalArgumentException(
+            "Wrong default data size: %d != %d".formatted(defaultData.length, dataSize)
+        );
+      }
+      State state = new State(
+          0,
+          new SparseGrid(maxLocation, defaultData),
+          initialIndividuals(),
           this
       );
       checkState(state);
@@ -280,6 +683,9 @@ public class Environment {
   ) {
 
     public int nOfFilledLocations() {
+      if (individuals instanceof Population population) {
+        return population.nOfFilledCells();
+      }
       return (int) individuals.stream().map(Individual::location).distinct().count();
     }
   }
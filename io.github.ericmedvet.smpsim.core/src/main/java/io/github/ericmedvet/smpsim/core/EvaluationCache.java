@@ -0,0 +1,298 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smpsim-core
+ * %%
+ * Copyright (C) 2018 - 2026 Eric Medvet
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package io.github.ericmedvet.smpsim.core;
+
+import io.github.ericmedvet.smpsim.core.Environment.Configuration;
+import io.github.ericmedvet.smpsim.core.Instruction.Continuation;
+import io.github.ericmedvet.smpsim.core.Instruction.Movement;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+public class EvaluationCache<V> {
+
+  private final int maxSize;
+  private final Map<Key, V> entries;
+  private final ConcurrentMap<Key, CompletableFuture<V>> pending;
+  private final LongAdder hits;
+  private final LongAdder misses;
+  private final LongAdder evictions;
+  private final Persistence<V> persistence;
+
+  public EvaluationCache(int maxSize) {
+    this(maxSize, null);
+  }
+
+  public EvaluationCache(int maxSize, Path path, Function<V, String> encoder, Function<String, V> decoder) {
+    this(maxSize, new Persistence<>(path, encoder, decoder));
+  }
+
+  private EvaluationCache(int maxSize, Persistence<V> persistence) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("Wrong max size: %d < 1".formatted(maxSize));
+    }
+    this.maxSize = maxSize;
+    this.persistence = persistence;
+    hits = new LongAdder();
+    misses = new LongAdder();
+    evictions = new LongAdder();
+    entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, V> eldest) {
+        if (size() > EvaluationCache.this.maxSize) {
+          evictions.increment();
+          return true;
+        }
+        return false;
+      }
+    };
+    pending = new ConcurrentHashMap<>();
+    if (persistence != null && Files.exists(persistence.path)) {
+      load();
+    }
+  }
+
+  public record Key(String digest) {
+
+    public static Key of(List<Instruction> instructions, Configuration configuration, long seed) {
+      MessageDigest digest;
+      try {
+        digest = MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException("Cannot compute keys", e);
+      }
+      digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(instructions.size()).array());
+      for (Instruction instruction : instructions) {
+        // cases are streamed, never materialized as a whole: a single instruction may have billions of bits
+        BitPacker packer = new BitPacker(digest);
+        packer.add(instruction.continuation().ordinal(), Utils.ceilLog2(Continuation.values().length));
+        for (Movement movement : instruction.movements()) {
+          packer.add(movement.ordinal(), Utils.ceilLog2(Movement.values().length));
+        }
+        packer.flush();
+        if (instruction.semantics() instanceof ProceduralSemantics semantics) {
+          // cases are a pure function of these
+          digest.update((byte) 1);
+          digest.update(
+              ByteBuffer.allocate(Long.BYTES + 3 * Integer.BYTES)
+                  .putLong(semantics.seed())
+                  .putInt(semantics.instructionIndex())
+                  .putInt(semantics.inputSize())
+                  .putInt(semantics.outputSize())
+                  .array()
+          );
+          continue;
+        }
+        digest.update((byte) 0);
+        if (instruction.semantics() instanceof WordSemantics semantics) {
+          for (int i = 0; i < semantics.size(); i = i + 1) {
+            packer.add(semantics.word(i), semantics.outputSize());
+          }
+        } else {
+          for (boolean[] output : instruction.semantics()) {
+            for (boolean bit : output) {
+              packer.add(bit ? 1L : 0L, 1);
+            }
+          }
+        }
+        packer.flush();
+      }
+      digest.update(configuration.toString().getBytes(StandardCharsets.UTF_8));
+      digest.update(ByteBuffer.allocate(Long.BYTES).putLong(seed).array());
+      return new Key(HexFormat.of().formatHex(digest.digest()));
+    }
+  }
+
+  // packs bits in the order of Instruction.toBitString(), each byte starting from its least significant bit
+  private static final class BitPacker {
+
+    private static final int BUFFER_SIZE = 4096;
+
+    private final MessageDigest digest;
+    private final byte[] buffer;
+    private int nOfBytes;
+    private long bits;
+    private int nOfBits;
+    private long nOfPackedBits;
+
+    private BitPacker(MessageDigest digest) {
+      this.digest = digest;
+      buffer = new byte[BUFFER_SIZE];
+    }
+
+    private void add(long word, int size) {
+      for (int i = 0; i < size; i = i + 1) {
+        bits = bits | (((word >>> i) & 1L) << nOfBits);
+        nOfBits = nOfBits + 1;
+        if (nOfBits == Byte.SIZE) {
+          buffer[nOfBytes] = (byte) bits;
+          nOfBytes = nOfBytes + 1;
+          bits = 0;
+          nOfBits = 0;
+          if (nOfBytes == buffer.length) {
+            digest.update(buffer, 0, nOfBytes);
+            nOfBytes = 0;
+          }
+        }
+      }
+      nOfPackedBits = nOfPackedBits + size;
+    }
+
+    // the number of bits goes last, so that the bits do not need to be counted in advance
+    private void flush() {
+      if (nOfBits > 0) {
+        buffer[nOfBytes] = (byte) bits;
+        nOfBytes = nOfBytes + 1;
+        bits = 0;
+        nOfBits = 0;
+      }
+      digest.update(buffer, 0, nOfBytes);
+      nOfBytes = 0;
+      digest.update(ByteBuffer.allocate(Long.BYTES).putLong(nOfPackedBits).array());
+      nOfPackedBits = 0;
+    }
+  }
+
+  public record Metrics(long hits, long misses, long evictions, int size, int maxSize) {
+
+    public double hitRate() {
+      return (hits + misses) == 0 ? 0d : ((double) hits / (double) (hits + misses));
+    }
+  }
+
+  private record Persistence<V>(Path path, Function<V, String> encoder, Function<String, V> decoder) {}
+
+  public V get(List<Instruction> instructions, Configuration configuration, long seed, Supplier<V> evaluator) {
+    return get(Key.of(instructions, configuration, seed), evaluator);
+  }
+
+  public V get(Key key, Supplier<V> evaluator) {
+    Optional<V> cached = lookup(key);
+    if (cached.isPresent()) {
+      hits.increment();
+      return cached.get();
+    }
+    CompletableFuture<V> future = new CompletableFuture<>();
+    CompletableFuture<V> existingFuture = pending.putIfAbsent(key, future);
+    if (existingFuture != null) {
+      // the same key is being evaluated by another thread
+      hits.increment();
+      return existingFuture.join();
+    }
+    try {
+      // it might have been completed between the lookup and the registration
+      cached = lookup(key);
+      if (cached.isPresent()) {
+        hits.increment();
+        future.complete(cached.get());
+        return cached.get();
+      }
+      misses.increment();
+      V value = evaluator.get();
+      if (value == null) {
+        throw new IllegalArgumentException("Null evaluation for key %s".formatted(key.digest));
+      }
+      synchronized (entries) {
+        entries.put(key, value);
+      }
+      future.complete(value);
+      return value;
+    } catch (RuntimeException e) {
+      future.completeExceptionally(e);
+      throw e;
+    } finally {
+      pending.remove(key);
+    }
+  }
+
+  private void load() {
+    try {
+      for (String line : Files.readAllLines(persistence.path, StandardCharsets.UTF_8)) {
+        if (line.isBlank()) {
+          continue;
+        }
+        int index = line.indexOf('\t');
+        if (index < 0) {
+          throw new IllegalArgumentException("Wrong cache line in %s: %s".formatted(persistence.path, line));
+        }
+        synchronized (entries) {
+          entries.put(new Key(line.substring(0, index)), persistence.decoder.apply(line.substring(index + 1)));
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private Optional<V> lookup(Key key) {
+    synchronized (entries) {
+      return Optional.ofNullable(entries.get(key));
+    }
+  }
+
+  public Metrics metrics() {
+    synchronized (entries) {
+      return new Metrics(hits.sum(), misses.sum(), evictions.sum(), entries.size(), maxSize);
+    }
+  }
+
+  public void save() throws IOException {
+    if (persistence == null) {
+      throw new IllegalStateException("Cache is not persistent");
+    }
+    List<Map.Entry<Key, V>> snapshot;
+    synchronized (entries) {
+      snapshot = new ArrayList<>(entries.entrySet());
+    }
+    Path tmpPath = persistence.path.resolveSibling(persistence.path.getFileName() + ".tmp");
+    try (BufferedWriter writer = Files.newBufferedWriter(tmpPath, StandardCharsets.UTF_8)) {
+      for (Map.Entry<Key, V> entry : snapshot) {
+        String encoded = persistence.encoder.apply(entry.getValue());
+        if (encoded.contains("\n") || encoded.contains("\r")) {
+          throw new IllegalArgumentException("Wrong encoded value: contains line breaks: %s".formatted(encoded));
+        }
+        writer.write(entry.getKey().digest);
+        writer.write('\t');
+        writer.write(encoded);
+        writer.newLine();
+      }
+    }
+    Files.move(tmpPath, persistence.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+}
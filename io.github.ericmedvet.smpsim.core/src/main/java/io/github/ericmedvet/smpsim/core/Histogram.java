@@ -0,0 +1,81 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smpsim-core
+ * %%
+ * Copyright (C) 2018 - 2026 Eric Medvet
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package io.github.ericmedvet.smpsim.core;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+// counts of unsigned words of the given size in equally wide bins: bin i gets the values whose top bits are i
+public class Histogram implements LongConsumer {
+
+  private final long[] counts;
+  private final int shift;
+  private long n;
+
+  public Histogram(int nOfBins, int valueSize) {
+    if (!Utils.isPowerOfTwo(nOfBins)) {
+      throw new IllegalArgumentException("Wrong number of bins: %d is not a power of 2".formatted(nOfBins));
+    }
+    if (valueSize < 1 || valueSize > Long.SIZE) {
+      throw new IllegalArgumentException("Wrong value size: %d not in [1,%d]".formatted(valueSize, Long.SIZE));
+    }
+    int binSize = Math.min(Integer.numberOfTrailingZeros(nOfBins), valueSize);
+    counts = new long[1 << binSize];
+    shift = valueSize - binSize;
+  }
+
+  @Override
+  public void accept(long value) {
+    counts[(int) (value >>> shift)] = counts[(int) (value >>> shift)] + 1;
+    n = n + 1;
+  }
+
+  public void accept(long value, long count) {
+    counts[(int) (value >>> shift)] = counts[(int) (value >>> shift)] + count;
+    n = n + count;
+  }
+
+  public long count(int bin) {
+    return counts[bin];
+  }
+
+  public long[] counts() {
+    return Arrays.copyOf(counts, counts.length);
+  }
+
+  public long n() {
+    return n;
+  }
+
+  public int nOfBins() {
+    return counts.length;
+  }
+
+  // moves one count, leaving n unchanged
+  public void replace(long oldValue, long newValue) {
+    counts[(int) (oldValue >>> shift)] = counts[(int) (oldValue >>> shift)] - 1;
+    counts[(int) (newValue >>> shift)] = counts[(int) (newValue >>> shift)] + 1;
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(counts);
+  }
+}
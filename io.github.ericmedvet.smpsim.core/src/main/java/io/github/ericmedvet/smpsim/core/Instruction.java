@@ -36,6 +36,9 @@ public record Instruction(
   }
 
   public int outputSize() {
+    if (semantics instanceof WordSemantics wordSemantics) {
+      return wordSemantics.outputSize();
+    }
     return semantics.getFirst().length;
   }
 
@@ -46,22 +49,24 @@ public record Instruction(
           "Wrong number of cases: %d is not a power of 2".formatted(semantics.size())
       );
     }
-    // check case size consistency
-    List<Integer> outputSizes = semantics.stream()
-        .mapToInt(c -> c.length)
-        .distinct()
-        .boxed()
-        .toList();
-    if (outputSizes.size() != 1) {
-      throw new IllegalArgumentException(
-          "Non uniform size of cases: %s".formatted(
-              outputSizes.stream()
-                  .map(i -> Integer.toString(i))
-                  .collect(
-                      Collectors.joining("; ")
-                  )
-          )
-      );
+    // check case size consistency (word semantics are uniform by construction)
+    if (!(semantics instanceof WordSemantics)) {
+      List<Integer> outputSizes = semantics.stream()
+          .mapToInt(c -> c.length)
+          .distinct()
+          .boxed()
+          .toList();
+      if (outputSizes.size() != 1) {
+        throw new IllegalArgumentException(
+            "Non uniform size of cases: %s".formatted(
+                outputSizes.stream()
+                    .map(i -> Integer.toString(i))
+                    .collect(
+                        Collectors.joining("; ")
+                    )
+            )
+        );
+      }
     }
   }
 
@@ -81,47 +86,77 @@ public record Instruction(
           )
       );
     }
-    int j = 0;
-    Continuation lContinuation = valid(
+    int j = headerSize(nOfDimensions);
+    List<boolean[]> lSemantics = new ArrayList<>(inputSize);
+    for (int i = 0; i < Math.powExact(2, inputSize); i = i + 1) {
+      lSemantics.add(Utils.subBitString(bitString, j, outputSize));
+      j = j + outputSize;
+    }
+    this(continuation(bitString), movements(nOfDimensions, bitString), lSemantics.stream().toList());
+  }
+
+  private static Continuation continuation(boolean[] header) {
+    return valid(
         Continuation.class,
         Utils.bitStringToInt(
-            Utils.subBitString(bitString, j, Utils.ceilLog2(Continuation.values().length))
+            Utils.subBitString(header, 0, Utils.ceilLog2(Continuation.values().length))
         )
     );
-    j = j + Utils.ceilLog2(Continuation.values().length);
+  }
+
+  private static int headerSize(int nOfDimensions) {
+    return Utils.ceilLog2(Continuation.values().length) + nOfDimensions * Utils.ceilLog2(Movement.values().length);
+  }
+
+  // the semantics is generated on demand: large input sizes are feasible, provided not all cases are used
+  public static Instruction lazyRandom(int nOfDimensions, int inputSize, int outputSize, RandomGenerator rg) {
+    boolean[] header = Utils.randomBitString(headerSize(nOfDimensions), rg);
+    return new Instruction(
+        continuation(header),
+        movements(nOfDimensions, header),
+        PackedSemantics.lazy(inputSize, outputSize, rg.nextLong())
+    );
+  }
+
+  private static List<Movement> movements(int nOfDimensions, boolean[] header) {
+    int j = Utils.ceilLog2(Continuation.values().length);
     List<Movement> lMovements = new ArrayList<>();
     for (int i = 0; i < nOfDimensions; i = i + 1) {
       lMovements.add(
           valid(
               Movement.class,
               Utils.bitStringToInt(
-                  Utils.subBitString(bitString, j, Utils.ceilLog2(Movement.values().length))
+                  Utils.subBitString(header, j, Utils.ceilLog2(Movement.values().length))
               )
           )
       );
       j = j + Utils.ceilLog2(Movement.values().length);
     }
-    List<boolean[]> lSemantics = new ArrayList<>(inputSize);
-    for (int i = 0; i < Math.powExact(2, inputSize); i = i + 1) {
-      lSemantics.add(Utils.subBitString(bitString, j, outputSize));
-      j = j + outputSize;
-    }
-    this(lContinuation, lMovements.stream().toList(), lSemantics.stream().toList());
+    return lMovements.stream().toList();
+  }
+
+  // each part is a function of (seed, index, position): instructions can be generated in any order, or in parallel
+  public static Instruction procedural(int nOfDimensions, int inputSize, int outputSize, long seed, int index) {
+    boolean[] header = Utils.wordToBitString(Utils.counterHash(seed, index, -1), headerSize(nOfDimensions));
+    return new Instruction(
+        continuation(header),
+        movements(nOfDimensions, header),
+        new ProceduralSemantics(inputSize, outputSize, seed, index)
+    );
   }
 
+  // bits are drawn in the same order as the bit string encoding, but the semantics is packed
   public static Instruction random(int nOfDimensions, int inputSize, int outputSize, RandomGenerator rg) {
+    boolean[] header = Utils.randomBitString(headerSize(nOfDimensions), rg);
     return new Instruction(
-        nOfDimensions,
-        inputSize,
-        outputSize,
-        Utils.randomBitString(size(nOfDimensions, inputSize, outputSize), rg)
+        continuation(header),
+        movements(nOfDimensions, header),
+        PackedSemantics.random(inputSize, outputSize, rg)
     );
   }
 
   public static int size(int nOfDimensions, int inputSize, int outputSize) {
-    int expectedSize = 0;
-    expectedSize = expectedSize + Utils.ceilLog2(Continuation.values().length);
-    expectedSize = expectedSize + nOfDimensions * Utils.ceilLog2(Movement.values().length);
+    int expectedSize = headerSize(nOfDimensions);
     expectedSize = expectedSize + Math.powExact(2, inputSize) * outputSize;
     return expectedSize;
   }
@@ -0,0 +1,292 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smpsim-core
+ * %%
+ * Copyright (C) 2018 - 2026 Eric Medvet
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package io.github.ericmedvet.smpsim.core;
+
+import io.github.ericmedvet.smpsim.core.Environment.Configuration;
+import io.github.ericmedvet.smpsim.core.Instruction.Continuation;
+import io.github.ericmedvet.smpsim.core.Instruction.Movement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.IntStream;
+
+public class InstructionSetAnalysis {
+
+  private final Configuration configuration;
+  private final List<Instruction> instructions;
+  private final List<BitSet> reachableInputs;
+  private final BitSet initiallySelected;
+  private final BitSet selected;
+
+  private InstructionSetAnalysis(
+      Configuration configuration,
+      List<Instruction> instructions,
+      List<BitSet> reachableInputs,
+      BitSet initiallySelected,
+      BitSet selected
+  ) {
+    this.configuration = configuration;
+    this.instructions = instructions;
+    this.reachableInputs = reachableInputs;
+    this.initiallySelected = initiallySelected;
+    this.selected = selected;
+  }
+
+  public static InstructionSetAnalysis of(Configuration configuration, List<Instruction> instructions) {
+    return of(configuration, instructions, List.of(new boolean[configuration.dataSize()]));
+  }
+
+  // over-approximates the inputs each instruction may see in runs where the cells initially hold only the given data
+  public static InstructionSetAnalysis of(
+      Configuration configuration,
+      List<Instruction> instructions,
+      Collection<boolean[]> initialData
+  ) {
+    int selectorSize = Utils.ceilLog2(instructions.size());
+    if (selectorSize > configuration.dataSize()) {
+      throw new IllegalArgumentException(
+          "Wrong number of instructions: %d need %d > %d data bits".formatted(
+              instructions.size(),
+              selectorSize,
+              configuration.dataSize()
+          )
+      );
+    }
+    // data and memory values are tracked as non-negative ints
+    if (configuration.instructionOutputSize() >= Integer.SIZE) {
+      throw new IllegalArgumentException(
+          "Wrong instruction output size: %d > %d".formatted(configuration.instructionOutputSize(), Integer.SIZE - 1)
+      );
+    }
+    int occupancySize = Utils.ceilLog2(configuration.maxNOfIndividuals());
+    // occupancy is at least 1 and is truncated to its bits
+    int[] occupancies = IntStream.rangeClosed(1, configuration.maxNOfIndividuals())
+        .map(n -> n & ((1 << occupancySize) - 1))
+        .distinct()
+        .toArray();
+    List<BitSet> reachableInputs = instructions.stream().map(_ -> new BitSet()).toList();
+    BitSet dataValues = new BitSet();
+    BitSet memoryValues = new BitSet();
+    BitSet initiallySelected = new BitSet();
+    BitSet selected = new BitSet();
+    // worklist on data and memory values: each (data, occupancy, memory) triple is visited once
+    Deque<Value> toVisit = new ArrayDeque<>();
+    initialData.forEach(d -> {
+      int value = Utils.bitStringToInt(d);
+      initiallySelected.set(select(value, selectorSize, instructions.size()));
+      if (!dataValues.get(value)) {
+        dataValues.set(value);
+        toVisit.add(new Value(true, value));
+      }
+    });
+    memoryValues.set(0);
+    toVisit.add(new Value(false, 0));
+    // neighbors may hold any reachable data (or nothing, beyond borders), occupied or not: the fixpoint is restarted
+    // with all the values when new neighbor data is reached
+    int neighborsShift = configuration.dataSize() + occupancySize + configuration.individualMemorySize();
+    BitSet neighborData = new BitSet();
+    neighborData.set(0);
+    int[] neighbors = neighbors(neighborData, configuration);
+    while (true) {
+      visit(
+          configuration,
+          instructions,
+          toVisit,
+          dataValues,
+          memoryValues,
+          occupancies,
+          neighbors,
+          neighborsShift,
+          reachableInputs,
+          selected
+      );
+      if (configuration.nOfNeighbors() == 0) {
+        break;
+      }
+      BitSet newNeighborData = (BitSet) neighborData.clone();
+      dataValues.stream().forEach(d -> newNeighborData.set(d & ((1 << configuration.neighborDataSize()) - 1)));
+      if (newNeighborData.equals(neighborData)) {
+        break;
+      }
+      neighborData = newNeighborData;
+      neighbors = neighbors(neighborData, configuration);
+      dataValues.stream().forEach(d -> toVisit.add(new Value(true, d)));
+    }
+    return new InstructionSetAnalysis(configuration, instructions, reachableInputs, initiallySelected, selected);
+  }
+
+  // all the combinations of the neighbors bits, given the possible neighbor data
+  private static int[] neighbors(BitSet neighborData, Configuration configuration) {
+    int[] combinations = new int[]{0};
+    int neighborSize = configuration.neighborDataSize() + 1;
+    for (int j = 0; j < configuration.nOfNeighbors(); j = j + 1) {
+      int shift = j * neighborSize;
+      int[] previous = combinations;
+      combinations = neighborData.stream()
+          .flatMap(d -> IntStream.of(d, d | (1 << configuration.neighborDataSize())))
+          .flatMap(n -> IntStream.of(previous).map(c -> c | (n << shift)))
+          .toArray();
+    }
+    return combinations;
+  }
+
+  private static void visit(
+      Configuration configuration,
+      List<Instruction> instructions,
+      Deque<Value> toVisit,
+      BitSet dataValues,
+      BitSet memoryValues,
+      int[] occupancies,
+      int[] neighbors,
+      int neighborsShift,
+      List<BitSet> reachableInputs,
+      BitSet selected
+  ) {
+    int selectorSize = Utils.ceilLog2(instructions.size());
+    int occupancySize = Utils.ceilLog2(configuration.maxNOfIndividuals());
+    while (!toVisit.isEmpty()) {
+      Value value = toVisit.poll();
+      List<int[]> pairs = new ArrayList<>();
+      if (value.isData) {
+        memoryValues.stream().forEach(m -> pairs.add(new int[]{value.value, m}));
+      } else {
+        dataValues.stream().forEach(d -> pairs.add(new int[]{d, value.value}));
+      }
+      for (int[] pair : pairs) {
+        int instructionIndex = select(pair[0], selectorSize, instructions.size());
+        selected.set(instructionIndex);
+        Instruction instruction = instructions.get(instructionIndex);
+        if (instruction.continuation().equals(Continuation.DEATH)) {
+          continue;
+        }
+        for (int occupancy : occupancies) {
+          for (int neighbor : neighbors) {
+            int input = pair[0] | (occupancy << configuration.dataSize()) | (pair[1] << (configuration
+                .dataSize() + occupancySize)) | (neighbor << neighborsShift);
+            reachableInputs.get(instructionIndex).set(input);
+            int output = Utils.bitStringToInt(instruction.semantics().get(input));
+            int newData = output & ((1 << configuration.dataSize()) - 1);
+            int newMemory = output >>> configuration.dataSize();
+            if (!dataValues.get(newData)) {
+              dataValues.set(newData);
+              toVisit.add(new Value(true, newData));
+            }
+            if (!memoryValues.get(newMemory)) {
+              memoryValues.set(newMemory);
+              toVisit.add(new Value(false, newMemory));
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private record Value(boolean isData, int value) {
+
+  }
+
+  private static int select(int data, int selectorSize, int nOfInstructions) {
+    return (data & ((1 << selectorSize) - 1)) % nOfInstructions;
+  }
+
+  public Configuration configuration() {
+    return configuration;
+  }
+
+  public List<Instruction> instructions() {
+    return instructions;
+  }
+
+  // the initial individuals die at the first step, before writing anything
+  public boolean isExtinct() {
+    return initiallySelected.stream()
+        .allMatch(i -> instructions.get(i).continuation().equals(Continuation.DEATH));
+  }
+
+  // no individual is ever born and no cell ever changes its data
+  public boolean isInert() {
+    int dataMask = (1 << configuration.dataSize()) - 1;
+    return selected.stream().allMatch(i -> {
+      Instruction instruction = instructions.get(i);
+      if (instruction.continuation().equals(Continuation.REPLICATION)) {
+        return false;
+      }
+      return reachableInputs.get(i)
+          .stream()
+          .allMatch(
+              input -> (Utils.bitStringToInt(instruction.semantics().get(input)) & dataMask) == (input & dataMask)
+          );
+    });
+  }
+
+  public boolean isSelected(int instructionIndex) {
+    return selected.get(instructionIndex);
+  }
+
+  public boolean isReachable(int instructionIndex, int input) {
+    return reachableInputs.get(instructionIndex).get(input);
+  }
+
+  public int nOfReachableInputs(int instructionIndex) {
+    return reachableInputs.get(instructionIndex).cardinality();
+  }
+
+  // unreachable parts are replaced by canonical ones: instruction sets with equal pruned encodings behave the same
+  public List<Instruction> pruned() {
+    return IntStream.range(0, instructions.size())
+        .mapToObj(i -> {
+          Instruction instruction = instructions.get(i);
+          BitSet reachable = reachableInputs.get(i);
+          // cases are packed on first access only, as the semantics may be too large to be materialized
+          PackedSemantics semantics = PackedSemantics.lazy(
+              instruction.inputSize(),
+              instruction.outputSize(),
+              input -> reachable.get(input) ? word(instruction, input) : 0L
+          );
+          if (!selected.get(i)) {
+            return new Instruction(
+                Continuation.NONE,
+                Collections.nCopies(instruction.movements().size(), Movement.STAY),
+                semantics
+            );
+          }
+          if (instruction.continuation().equals(Continuation.DEATH)) {
+            return new Instruction(
+                Continuation.DEATH,
+                Collections.nCopies(instruction.movements().size(), Movement.STAY),
+                semantics
+            );
+          }
+          return new Instruction(instruction.continuation(), instruction.movements(), semantics);
+        })
+        .toList();
+  }
+
+  private static long word(Instruction instruction, int input) {
+    if (instruction.semantics() instanceof WordSemantics semantics) {
+      return semantics.word(input);
+    }
+    return Utils.bitStringToWord(instruction.semantics().get(input));
+  }
+}
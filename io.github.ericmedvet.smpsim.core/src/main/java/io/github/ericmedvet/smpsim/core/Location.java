@@ -20,7 +20,9 @@
 package io.github.ericmedvet.smpsim.core;
 
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -35,16 +37,55 @@ public record Location(int[] coords) {
     return new Location(coords);
   }
 
+  // inverse of index()
+  public static Location ofIndex(long index, Location bound) {
+    int[] coords = new int[bound.coords.length];
+    for (int i = 0; i < coords.length; i = i + 1) {
+      coords[i] = (int) (index % bound.coords[i]);
+      index = index / bound.coords[i];
+    }
+    return new Location(coords);
+  }
+
   public Set<Location> boundedLocations() {
     Set<Location> locations = new LinkedHashSet<>();
-    Location last = Location.origin(coords.length);
-    while (last.isWithin(this)) {
-      locations.add(last);
-      last = last.next(this);
-    }
+    boundedLocationsIterator().forEachRemaining(locations::add);
     return locations;
   }
 
+  public Iterator<Location> boundedLocationsIterator() {
+    return new Iterator<>() {
+      private Location last = Location.origin(coords.length);
+
+      @Override
+      public boolean hasNext() {
+        return last.isWithin(Location.this);
+      }
+
+      @Override
+      public Location next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        Location current = last;
+        last = last.next(Location.this);
+        return current;
+      }
+    };
+  }
+
+  // linear index within the bound, with the first coordinate varying fastest (as in boundedLocations())
+  public long index(Location bound) {
+    if (!isWithin(bound)) {
+      throw new IllegalArgumentException("Wrong location: %s not within %s".formatted(this, bound));
+    }
+    long index = 0;
+    for (int i = coords.length - 1; i >= 0; i = i - 1) {
+      index = index * bound.coords[i] + coords[i];
+    }
+    return index;
+  }
+
   public boolean isWithin(Location bound) {
     if (coords.length != bound.coords.length) {
       throw new IllegalArgumentException(
@@ -0,0 +1,104 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smpsim-core
+ * %%
+ * Copyright (C) 2018 - 2026 Eric Medvet
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package io.github.ericmedvet.smpsim.core;
+
+import java.util.Arrays;
+
+// open addressing (linear probing) map from non-negative longs to ints, reusable across ticks via clear()
+final class LongIntMap {
+
+  private static final long EMPTY = -1;
+
+  private long[] keys;
+  private int[] values;
+  private int size;
+
+  LongIntMap(int expectedSize) {
+    int capacity = 16;
+    while (capacity < expectedSize * 2) {
+      capacity = capacity * 2;
+    }
+    keys = new long[capacity];
+    values = new int[capacity];
+    Arrays.fill(keys, EMPTY);
+  }
+
+  void clear() {
+    Arrays.fill(keys, EMPTY);
+    size = 0;
+  }
+
+  int get(long key, int defaultValue) {
+    int slot = slot(key);
+    return (keys[slot] == EMPTY) ? defaultValue : values[slot];
+  }
+
+  int increment(long key) {
+    int slot = slot(key);
+    if (keys[slot] == EMPTY) {
+      put(key, 1);
+      return 1;
+    }
+    values[slot] = values[slot] + 1;
+    return values[slot];
+  }
+
+  void put(long key, int value) {
+    int slot = slot(key);
+    if (keys[slot] == EMPTY) {
+      if ((size + 1) * 2 > keys.length) {
+        resize();
+        slot = slot(key);
+      }
+      size = size + 1;
+      keys[slot] = key;
+    }
+    values[slot] = value;
+  }
+
+  private void resize() {
+    long[] oldKeys = keys;
+    int[] oldValues = values;
+    keys = new long[oldKeys.length * 2];
+    values = new int[oldKeys.length * 2];
+    Arrays.fill(keys, EMPTY);
+    for (int i = 0; i < oldKeys.length; i = i + 1) {
+      if (oldKeys[i] != EMPTY) {
+        int slot = slot(oldKeys[i]);
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+
+  int size() {
+    return size;
+  }
+
+  private int slot(long key) {
+    int mask = keys.length - 1;
+    long h = key * 0x9E3779B97F4A7C15L;
+    int slot = (int) (h ^ (h >>> 32)) & mask;
+    while (keys[slot] != EMPTY && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+}
@@ -20,67 +20,376 @@
 package io.github.ericmedvet.smpsim.core;
 
 import io.github.ericmedvet.smpsim.core.Environment.Configuration;
+import io.github.ericmedvet.smpsim.core.Environment.Neighborhood;
 import io.github.ericmedvet.smpsim.core.Environment.State;
-import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
 import java.util.Random;
+import java.util.function.Consumer;
 import java.util.random.RandomGenerator;
 import java.util.stream.IntStream;
 
+// runs one simulation per seed; settings are given as key=value args, possibly with config=<properties file>, with
+// later ones overriding earlier ones
 public class Main {
 
-  static void main() throws IOException {
-    Configuration configuration = new Configuration(
-        Location.of(128, 128),
-        true,
-        3,
-        3,
-        64
-    );
-    int maxK = 20000;
-    int nOfInstructions = 16;
-    State initialState = configuration.initialState(boolean[]::new);
-    StateDrawer drawer = new StateDrawer(StateDrawer.Configuration.DEFAULT);
-    for (int seed = 0; seed < 100; seed++) {
-      RandomGenerator rg = new Random(seed);
-      List<Instruction> instructions = generateInstructions(configuration, 8, rg);
-      Environment environment = new Environment(configuration, instructions);
-      State state = initialState;
-      List<Integer> popSizes = new ArrayList<>();
-      while (!state.individuals().isEmpty() && state.k() <= maxK) {
-        popSizes.add(state.individuals().size());
-        state = environment.step(state);
-      }
-      System.out.printf("seed = %3d\t", seed);
-      System.out.printf("final k = %8d\t", state.k());
-      System.out.printf("max pop size = %d\t", popSizes.stream().max(Integer::compare).orElse(0));
-      System.out.printf(
-          "avg pop size = %.1f%n",
-          popSizes.stream().mapToDouble(s -> s).average().orElse(0)
+  private static final Map<String, String> DEFAULTS = defaults();
+
+  private static final String SUMMARY_HEADER = String.join(
+      ",",
+      "seed",
+      "status",
+      "final_k",
+      "max_n_of_individuals",
+      "avg_n_of_individuals",
+      "n_of_births",
+      "n_of_deaths",
+      "avg_n_of_filled_cells",
+      "elapsed_s",
+      "ticks_per_s",
+      "individuals_per_s"
+  );
+
+  public enum InitialData { ZERO, RANDOM }
+
+  public enum InstructionType { RANDOM, LAZY, PROCEDURAL }
+
+  public record Settings(
+      Configuration configuration,
+      int nOfInstructions,
+      InstructionType instructionType,
+      InitialData initialData,
+      List<Long> seeds,
+      long maxK,
+      int stagnation,
+      int saturation,
+      boolean analysis,
+      boolean throughput,
+      Path summary,
+      Path snapshots,
+      long snapshotEvery,
+      Path renders,
+      long minKToRender
+  ) {
+
+    public static Settings of(Map<String, String> values) {
+      return new Settings(
+          new Configuration(
+              Location.of(
+                  Arrays.stream(values.get("size").split("x"))
+                      .mapToInt(s -> Integer.parseInt(s.trim()))
+                      .toArray()
+              ),
+              Boolean.parseBoolean(values.get("toroidal")),
+              Integer.parseInt(values.get("dataSize")),
+              Integer.parseInt(values.get("memorySize")),
+              Integer.parseInt(values.get("maxNOfIndividuals")),
+              Neighborhood.valueOf(values.get("neighborhood").toUpperCase(Locale.ROOT)),
+              Integer.parseInt(values.get("neighborDataSize"))
+          ),
+          Integer.parseInt(values.get("nOfInstructions")),
+          InstructionType.valueOf(values.get("instructionType").toUpperCase(Locale.ROOT)),
+          InitialData.valueOf(values.get("initialData").toUpperCase(Locale.ROOT)),
+          seeds(values.get("seeds")),
+          Long.parseLong(values.get("maxK")),
+          Integer.parseInt(values.get("stagnation")),
+          Integer.parseInt(values.get("saturation")),
+          Boolean.parseBoolean(values.get("analysis")),
+          Boolean.parseBoolean(values.get("throughput")),
+          path(values.get("summary")),
+          path(values.get("snapshots")),
+          Long.parseLong(values.get("snapshotEvery")),
+          path(values.get("renders")),
+          Long.parseLong(values.get("minKToRender"))
       );
-      if (state.k() > 100) {
-        drawer.save(new File("../%03d.svg".formatted(seed)), state);
+    }
+
+    private static Path path(String value) {
+      return value.isBlank() ? null : Path.of(value);
+    }
+
+    // a single seed, an inclusive range (like 0-99), or a comma-separated list of them
+    private static List<Long> seeds(String value) {
+      List<Long> seeds = new ArrayList<>();
+      for (String part : value.split(",")) {
+        String[] bounds = part.trim().split("-");
+        if (bounds.length == 1) {
+          seeds.add(Long.parseLong(bounds[0].trim()));
+        } else if (bounds.length == 2) {
+          for (long seed = Long.parseLong(bounds[0].trim()); seed <= Long.parseLong(bounds[1].trim()); seed++) {
+            seeds.add(seed);
+          }
+        } else {
+          throw new IllegalArgumentException("Wrong seeds: %s".formatted(value));
+        }
       }
+      return List.copyOf(seeds);
     }
   }
 
-  private static List<Instruction> generateInstructions(
-      Configuration configuration,
-      int n,
-      RandomGenerator rg
-  ) {
-    return IntStream.range(0, n)
+  // counts ticks and processed individuals, for the throughput
+  private static final class Counter implements StepObserver {
+
+    private long nOfSteps;
+    private long nOfIndividuals;
+
+    @Override
+    public void stepped(long k, int nOfIndividuals, int nOfFilledCells, int nOfBirths, int nOfDeaths) {
+      nOfSteps = nOfSteps + 1;
+      this.nOfIndividuals = this.nOfIndividuals + nOfIndividuals;
+    }
+  }
+
+  private static Map<String, String> defaults() {
+    Map<String, String> defaults = new LinkedHashMap<>();
+    defaults.put("size", "128x128");
+    defaults.put("toroidal", "true");
+    defaults.put("dataSize", "3");
+    defaults.put("memorySize", "3");
+    defaults.put("maxNOfIndividuals", "64");
+    defaults.put("neighborhood", "none");
+    defaults.put("neighborDataSize", "0");
+    defaults.put("nOfInstructions", "8");
+    defaults.put("instructionType", "random");
+    defaults.put("initialData", "zero");
+    defaults.put("seeds", "0-99");
+    defaults.put("maxK", "20000");
+    defaults.put("stagnation", "0");
+    defaults.put("saturation", "0");
+    defaults.put("analysis", "true");
+    defaults.put("throughput", "false");
+    defaults.put("summary", "");
+    defaults.put("snapshots", "");
+    defaults.put("snapshotEvery", "0");
+    defaults.put("renders", "");
+    defaults.put("minKToRender", "100");
+    return defaults;
+  }
+
+  private static State initialState(Settings settings, long seed) {
+    return switch (settings.initialData) {
+      case ZERO -> settings.configuration.lazyInitialState();
+      case RANDOM -> {
+        RandomGenerator rg = new Random(Utils.counterHash(seed, 0));
+        yield settings.configuration.initialState(n -> Utils.randomBitString(n, rg));
+      }
+    };
+  }
+
+  private static List<Instruction> instructions(Settings settings, long seed) {
+    Configuration configuration = settings.configuration;
+    int nOfDimensions = configuration.maxLocation().coords().length;
+    RandomGenerator rg = new Random(seed);
+    return IntStream.range(0, settings.nOfInstructions)
         .mapToObj(
-            i -> Instruction.random(
-                configuration.maxLocation().coords().length,
-                configuration.instructionInputSize(),
-                configuration.instructionOutputSize(),
-                rg
-            )
+            i -> switch (settings.instructionType) {
+              case RANDOM -> Instruction.random(
+                  nOfDimensions,
+                  configuration.instructionInputSize(),
+                  configuration.instructionOutputSize(),
+                  rg
+              );
+              case LAZY -> Instruction.lazyRandom(
+                  nOfDimensions,
+                  configuration.instructionInputSize(),
+                  configuration.instructionOutputSize(),
+                  rg
+              );
+              case PROCEDURAL -> Instruction.procedural(
+                  nOfDimensions,
+                  configuration.instructionInputSize(),
+                  configuration.instructionOutputSize(),
+                  seed,
+                  i
+              );
+            }
         )
         .toList();
   }
 
-}
\ No newline at end of file
+  public static void main(String[] args) throws IOException {
+    // renders are drawn offscreen: no display is needed, neither on the JVM nor in native images
+    System.setProperty("java.awt.headless", "true");
+    if (args.length == 1 && args[0].equals("help")) {
+      System.out.println("Usage: Main [config=<properties file>] [key=value]...");
+      DEFAULTS.forEach((key, value) -> System.out.printf("  %s=%s%n", key, value));
+      return;
+    }
+    run(Settings.of(parse(args)));
+  }
+
+  public static Map<String, String> parse(String[] args) throws IOException {
+    Map<String, String> values = new LinkedHashMap<>(DEFAULTS);
+    for (String arg : args) {
+      int i = arg.indexOf('=');
+      if (i < 0) {
+        throw new IllegalArgumentException("Wrong arg: %s is not key=value".formatted(arg));
+      }
+      if (arg.substring(0, i).equals("config")) {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(Path.of(arg.substring(i + 1)))) {
+          properties.load(reader);
+        }
+        for (String key : properties.stringPropertyNames()) {
+          put(values, key, properties.getProperty(key));
+        }
+      } else {
+        put(values, arg.substring(0, i), arg.substring(i + 1));
+      }
+    }
+    return values;
+  }
+
+  private static void put(Map<String, String> values, String key, String value) {
+    if (!DEFAULTS.containsKey(key)) {
+      throw new IllegalArgumentException("Unknown key: %s not in %s".formatted(key, DEFAULTS.keySet()));
+    }
+    values.put(key, value.trim());
+  }
+
+  public static void run(Settings settings) throws IOException {
+    StateDrawer drawer = new StateDrawer(StateDrawer.Configuration.DEFAULT);
+    // the throughput mode does no analysis, no collection of statistics, and writes neither snapshots nor renders
+    boolean analysis = settings.analysis && !settings.throughput;
+    Path snapshots = settings.throughput ? null : settings.snapshots;
+    Path renders = (settings.throughput || settings.configuration.maxLocation().coords().length != 2) ? null : settings
+        .renders;
+    for (Path dir : new Path[]{snapshots, renders}) {
+      if (dir != null) {
+        Files.createDirectories(dir);
+      }
+    }
+    long totalNOfSteps = 0;
+    long totalNOfIndividuals = 0;
+    long totalElapsed = 0;
+    try (PrintWriter summary = (settings.summary == null) ? null : new PrintWriter(
+        Files.newBufferedWriter(settings.summary)
+    )) {
+      if (summary != null) {
+        summary.println(SUMMARY_HEADER);
+      }
+      for (long seed : settings.seeds) {
+        List<Instruction> instructions = instructions(settings, seed);
+        State initialState = initialState(settings, seed);
+        if (analysis) {
+          // the analysis assumes all-zero cells unless given the initial data
+          InstructionSetAnalysis instructionSetAnalysis = switch (settings.initialData) {
+            case ZERO -> InstructionSetAnalysis.of(settings.configuration, instructions);
+            case RANDOM -> InstructionSetAnalysis.of(
+                settings.configuration,
+                instructions,
+                initialState.data().values()
+            );
+          };
+          if (instructionSetAnalysis.isExtinct() || instructionSetAnalysis.isInert()) {
+            String status = instructionSetAnalysis.isExtinct() ? "extinct" : "inert";
+            System.out.printf("seed = %3d\tskipped: %s%n", seed, status);
+            if (summary != null) {
+              summary.printf("%d,%s,,,,,,,,,%n", seed, status);
+            }
+            continue;
+          }
+        }
+        Counter counter = new Counter();
+        StepStatistics statistics = settings.throughput ? null : new StepStatistics(
+            instructions.size(),
+            settings.configuration.dataSize(),
+            initialState.data(),
+            8,
+            1000,
+            new Random(seed)
+        );
+        Environment environment = new Environment(
+            settings.configuration,
+            instructions,
+            settings.throughput ? counter : StepObserver.all(counter, statistics)
+        );
+        Consumer<State> listener = (snapshots == null || settings.snapshotEvery <= 0) ? _ -> {
+        } : s -> {
+          if (s.k() % settings.snapshotEvery == 0) {
+            snapshot(snapshots, seed, s);
+          }
+        };
+        long startTime = System.nanoTime();
+        State state = environment.run(initialState, termination(settings), listener);
+        long elapsed = System.nanoTime() - startTime;
+        totalNOfSteps = totalNOfSteps + counter.nOfSteps;
+        totalNOfIndividuals = totalNOfIndividuals + counter.nOfIndividuals;
+        totalElapsed = totalElapsed + elapsed;
+        double elapsedSeconds = elapsed / 1e9;
+        System.out.printf("seed = %3d\t", seed);
+        System.out.printf("final k = %8d\t", state.k());
+        if (statistics != null) {
+          System.out.printf("max pop size = %.0f\t", statistics.nOfIndividuals().max());
+          System.out.printf("avg pop size = %.1f\t", statistics.nOfIndividuals().mean());
+        }
+        System.out.printf("ticks/s = %.0f\t", counter.nOfSteps / elapsedSeconds);
+        System.out.printf("individuals/s = %.0f%n", counter.nOfIndividuals / elapsedSeconds);
+        if (summary != null) {
+          summary.printf(
+              Locale.ROOT,
+              "%d,%s,%d,%s,%s,%s,%s,%s,%.3f,%.1f,%.1f%n",
+              seed,
+              state.individuals().isEmpty() ? "extinct" : "alive",
+              state.k(),
+              (statistics == null) ? "" : String.format(Locale.ROOT, "%.0f", statistics.nOfIndividuals().max()),
+              (statistics == null) ? "" : String.format(Locale.ROOT, "%.3f", statistics.nOfIndividuals().mean()),
+              (statistics == null) ? "" : Long.toString(statistics.nOfBirths()),
+              (statistics == null) ? "" : Long.toString(statistics.nOfDeaths()),
+              (statistics == null) ? "" : String.format(Locale.ROOT, "%.3f", statistics.nOfFilledCells().mean()),
+              elapsedSeconds,
+              counter.nOfSteps / elapsedSeconds,
+              counter.nOfIndividuals / elapsedSeconds
+          );
+          summary.flush();
+        }
+        if (snapshots != null) {
+          snapshot(snapshots, seed, state);
+        }
+        if (renders != null && state.k() > settings.minKToRender) {
+          drawer.save(renders.resolve("%03d.svg".formatted(seed)).toFile(), state);
+        }
+      }
+    }
+    if (settings.throughput && totalElapsed > 0) {
+      System.out.printf(
+          "overall\tticks/s = %.0f\tindividuals/s = %.0f%n",
+          totalNOfSteps / (totalElapsed / 1e9),
+          totalNOfIndividuals / (totalElapsed / 1e9)
+      );
+    }
+  }
+
+  private static void snapshot(Path dir, long seed, State state) {
+    try (OutputStream outputStream = Files.newOutputStream(dir.resolve("%03d-%08d.smps".formatted(seed, state.k())))) {
+      StateSerializer.write(state, outputStream);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static Termination termination(Settings settings) {
+    List<Termination> terminations = new ArrayList<>();
+    terminations.add(Termination.extinction());
+    terminations.add(Termination.maxK(settings.maxK));
+    if (settings.stagnation > 0) {
+      terminations.add(Termination.stagnation(settings.stagnation));
+    }
+    if (settings.saturation > 0) {
+      terminations.add(Termination.saturation(settings.saturation));
+    }
+    return Termination.any(terminations.toArray(Termination[]::new));
+  }
+}
@@ -0,0 +1,229 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smpsim-core
+ * %%
+ * Copyright (C) 2018 - 2026 Eric Medvet
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package io.github.ericmedvet.smpsim.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+import java.util.function.IntToLongFunction;
+import java.util.function.LongPredicate;
+import java.util.random.RandomGenerator;
+import java.util.stream.IntStream;
+
+public class PackedSemantics extends AbstractList<boolean[]> implements WordSemantics {
+
+  private static final int MAX_INPUT_SIZE = 30;
+  private static final int PAGE_INPUT_SIZE = 12;
+
+  private final int inputSize;
+  private final int outputSize;
+  private final int pageInputSize;
+  private final AtomicReferenceArray<long[]> pages;
+  private final IntFunction<long[]> pageGenerator;
+  // only for the tables generated from a seed, which can be rebuilt from it
+  private final Long seed;
+
+  private PackedSemantics(int inputSize, int outputSize, IntFunction<long[]> pageGenerator) {
+    this(inputSize, outputSize, pageGenerator, null);
+  }
+
+  private PackedSemantics(int inputSize, int outputSize, IntFunction<long[]> pageGenerator, Long seed) {
+    if (inputSize < 0 || inputSize > MAX_INPUT_SIZE) {
+      throw new IllegalArgumentException(
+          "Wrong input size: %d not in [0,%d]".formatted(inputSize, MAX_INPUT_SIZE)
+      );
+    }
+    if (outputSize < 1 || outputSize > Long.SIZE) {
+      throw new IllegalArgumentException(
+          "Wrong output size: %d not in [1,%d]".formatted(outputSize, Long.SIZE)
+      );
+    }
+    this.inputSize = inputSize;
+    this.outputSize = outputSize;
+    this.pageGenerator = pageGenerator;
+    this.seed = seed;
+    pageInputSize = pageInputSize(inputSize);
+    pages = new AtomicReferenceArray<>(1 << (inputSize - pageInputSize));
+  }
+
+  public static PackedSemantics of(boolean[] bitString, int offset, int inputSize, int outputSize) {
+    return eager(inputSize, outputSize, b -> bitString[offset + (int) b]);
+  }
+
+  // draws one boolean per bit in the same order as Utils.randomBitString()
+  public static PackedSemantics random(int inputSize, int outputSize, RandomGenerator rg) {
+    return eager(inputSize, outputSize, _ -> rg.nextBoolean());
+  }
+
+  // each page is generated on first access from its own generator, hence independently of the access order
+  public static PackedSemantics lazy(int inputSize, int outputSize, long seed) {
+    int pageLength = pageLength(inputSize, outputSize);
+    return new PackedSemantics(
+        inputSize,
+        outputSize,
+        p -> {
+          SplittableRandom random = new SplittableRandom(seed ^ (0x9E3779B97F4A7C15L * (p + 1)));
+          long[] words = new long[pageLength];
+          for (int i = 0; i < words.length; i = i + 1) {
+            words[i] = random.nextLong();
+          }
+          return words;
+        },
+        seed
+    );
+  }
+
+  // each page is filled on first access with the cases computed by the generator
+  public static PackedSemantics lazy(int inputSize, int outputSize, IntToLongFunction caseGenerator) {
+    int pageLength = pageLength(inputSize, outputSize);
+    int pageInputSize = pageInputSize(inputSize);
+    return new PackedSemantics(
+        inputSize,
+        outputSize,
+        p -> {
+          long[] words = new long[pageLength];
+          for (int i = 0; i < (1 << pageInputSize); i = i + 1) {
+            long word = caseGenerator.applyAsLong((p << pageInputSize) + i);
+            long bit = (long) i * outputSize;
+            int w = (int) (bit >>> 6);
+            int shift = (int) (bit & 63);
+            words[w] = words[w] | (word << shift);
+            if (shift + outputSize > Long.SIZE) {
+              words[w + 1] = words[w + 1] | (word >>> (Long.SIZE - shift));
+            }
+          }
+          return words;
+        }
+    );
+  }
+
+  // the counterpart of writeTo()
+  static PackedSemantics readFrom(DataInput input, int inputSize, int outputSize) throws IOException {
+    if (input.readBoolean()) {
+      return lazy(inputSize, outputSize, input.readLong());
+    }
+    PackedSemantics semantics = new PackedSemantics(inputSize, outputSize, null);
+    for (int p = 0; p < semantics.pages.length(); p = p + 1) {
+      long[] words = new long[pageLength(inputSize, outputSize)];
+      for (int i = 0; i < words.length; i = i + 1) {
+        words[i] = input.readLong();
+      }
+      semantics.pages.set(p, words);
+    }
+    return semantics;
+  }
+
+  // bits are requested in order, with their global index
+  private static PackedSemantics eager(int inputSize, int outputSize, LongPredicate bitSupplier) {
+    PackedSemantics semantics = new PackedSemantics(inputSize, outputSize, null);
+    long nOfPageBits = (long) outputSize << semantics.pageInputSize;
+    for (int p = 0; p < semantics.pages.length(); p = p + 1) {
+      long[] words = new long[pageLength(inputSize, outputSize)];
+      for (long b = 0; b < nOfPageBits; b = b + 1) {
+        if (bitSupplier.test(p * nOfPageBits + b)) {
+          words[(int) (b >>> 6)] = words[(int) (b >>> 6)] | (1L << (b & 63));
+        }
+      }
+      semantics.pages.set(p, words);
+    }
+    return semantics;
+  }
+
+  private static int pageInputSize(int inputSize) {
+    return Math.min(inputSize, PAGE_INPUT_SIZE);
+  }
+
+  private static int pageLength(int inputSize, int outputSize) {
+    return (int) ((((long) outputSize << pageInputSize(inputSize)) + Long.SIZE - 1) / Long.SIZE);
+  }
+
+  @Override
+  public boolean[] get(int index) {
+    return Utils.wordToBitString(word(index), outputSize);
+  }
+
+  public int inputSize() {
+    return inputSize;
+  }
+
+  public PackedSemantics materialize() {
+    IntStream.range(0, pages.length()).parallel().forEach(this::page);
+    return this;
+  }
+
+  @Override
+  public int outputSize() {
+    return outputSize;
+  }
+
+  private long[] page(int p) {
+    long[] words = pages.get(p);
+    if (words == null) {
+      words = pageGenerator.apply(p);
+      if (!pages.compareAndSet(p, null, words)) {
+        words = pages.get(p);
+      }
+    }
+    return words;
+  }
+
+  @Override
+  public int size() {
+    return 1 << inputSize;
+  }
+
+  // tables generated from a seed are written as their seed, the other ones page by page: pages not yet generated are
+  // generated without being kept
+  void writeTo(DataOutput output) throws IOException {
+    output.writeBoolean(seed != null);
+    if (seed != null) {
+      output.writeLong(seed);
+      return;
+    }
+    for (int p = 0; p < pages.length(); p = p + 1) {
+      long[] words = pages.get(p);
+      if (words == null) {
+        words = pageGenerator.apply(p);
+      }
+      for (long word : words) {
+        output.writeLong(word);
+      }
+    }
+  }
+
+  @Override
+  public long word(int index) {
+    Objects.checkIndex(index, size());
+    long[] words = page(index >>> pageInputSize);
+    long bit = (long) (index & ((1 << pageInputSize) - 1)) * outputSize;
+    int w = (int) (bit >>> 6);
+    int shift = (int) (bit & 63);
+    long word = words[w] >>> shift;
+    if (shift + outputSize > Long.SIZE) {
+      word = word | (words[w + 1] << (Long.SIZE - shift));
+    }
+    return (outputSize == Long.SIZE) ? word : (word & ((1L << outputSize) - 1));
+  }
+}
@@ -0,0 +1,150 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smpsim-core
+ * %%
+ * Copyright (C) 2018 - 2026 Eric Medvet
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package io.github.ericmedvet.smpsim.core;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+// struct-of-arrays store of individuals: cells are linear indexes (see Location.index()), memories are packed; the
+// list view returns new Individual objects, whose changes are not reflected here
+public class Population extends AbstractList<Individual> {
+
+  private final Location maxLocation;
+  private final int memorySize;
+  private long[] cells;
+  private long[] kOfBirths;
+  private long[] memories;
+  private int size;
+
+  public Population(Location maxLocation, int memorySize) {
+    this(maxLocation, memorySize, 16);
+  }
+
+  private Population(Location maxLocation, int memorySize, int capacity) {
+    if (memorySize > Long.SIZE) {
+      throw new IllegalArgumentException("Wrong memory size: %d > %d".formatted(memorySize, Long.SIZE));
+    }
+    this.maxLocation = maxLocation;
+    this.memorySize = memorySize;
+    cells = new long[capacity];
+    kOfBirths = new long[capacity];
+    memories = new long[capacity];
+  }
+
+  public static Population of(Location maxLocation, int memorySize, List<Individual> individuals) {
+    Population population = new Population(maxLocation, memorySize, Math.max(16, individuals.size()));
+    for (Individual individual : individuals) {
+      if (individual.memory().length != memorySize) {
+        throw new IllegalArgumentException(
+            "Wrong individual memory size: %d != %d".formatted(individual.memory().length, memorySize)
+        );
+      }
+      population.add(
+          individual.location().index(maxLocation),
+          individual.kOfBirth(),
+          Utils.bitStringToWord(individual.memory())
+      );
+    }
+    return population;
+  }
+
+  void add(long cell, long kOfBirth, long memory) {
+    if (size == cells.length) {
+      int capacity = cells.length * 2;
+      cells = Arrays.copyOf(cells, capacity);
+      kOfBirths = Arrays.copyOf(kOfBirths, capacity);
+      memories = Arrays.copyOf(memories, capacity);
+    }
+    cells[size] = cell;
+    kOfBirths[size] = kOfBirth;
+    memories[size] = memory;
+    size = size + 1;
+  }
+
+  public long cell(int i) {
+    Objects.checkIndex(i, size);
+    return cells[i];
+  }
+
+  public Population copy() {
+    Population population = new Population(maxLocation, memorySize, Math.max(16, size));
+    System.arraycopy(cells, 0, population.cells, 0, size);
+    System.arraycopy(kOfBirths, 0, population.kOfBirths, 0, size);
+    System.arraycopy(memories, 0, population.memories, 0, size);
+    population.size = size;
+    return population;
+  }
+
+  // allocates the individual: hot paths use cell(), kOfBirth() and memory()
+  @Override
+  public Individual get(int i) {
+    Objects.checkIndex(i, size);
+    return new Individual(
+        Location.ofIndex(cells[i], maxLocation),
+        kOfBirths[i],
+        Utils.wordToBitString(memories[i], memorySize)
+    );
+  }
+
+  public long kOfBirth(int i) {
+    Objects.checkIndex(i, size);
+    return kOfBirths[i];
+  }
+
+  public Location maxLocation() {
+    return maxLocation;
+  }
+
+  public long memory(int i) {
+    Objects.checkIndex(i, size);
+    return memories[i];
+  }
+
+  public int memorySize() {
+    return memorySize;
+  }
+
+  public int nOfFilledCells() {
+    LongIntMap filledCells = new LongIntMap(size);
+    for (int i = 0; i < size; i = i + 1) {
+      filledCells.put(cells[i], 1);
+    }
+    return filledCells.size();
+  }
+
+  // for in-place compaction while stepping
+  void set(int i, long cell, long kOfBirth, long memory) {
+    cells[i] = cell;
+    kOfBirths[i] = kOfBirth;
+    memories[i] = memory;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  void truncate(int newSize) {
+    Objects.checkIndex(newSize, size + 1);
+    size = newSize;
+  }
+}
@@ -0,0 +1,93 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smpsim-core
+ * %%
+ * Copyright (C) 2018 - 2026 Eric Medvet
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package io.github.ericmedvet.smpsim.core;
+
+import java.util.AbstractList;
+import java.util.Objects;
+
+// each case is a pure function of (seed, instruction index, input): nothing is stored
+public class ProceduralSemantics extends AbstractList<boolean[]> implements WordSemantics {
+
+  private static final int MAX_INPUT_SIZE = 30;
+
+  private final int inputSize;
+  private final int outputSize;
+  private final long seed;
+  private final int instructionIndex;
+
+  public ProceduralSemantics(int inputSize, int outputSize, long seed, int instructionIndex) {
+    if (inputSize < 0 || inputSize > MAX_INPUT_SIZE) {
+      throw new IllegalArgumentException(
+          "Wrong input size: %d not in [0,%d]".formatted(inputSize, MAX_INPUT_SIZE)
+      );
+    }
+    if (outputSize < 1 || outputSize > Long.SIZE) {
+      throw new IllegalArgumentException(
+          "Wrong output size: %d not in [1,%d]".formatted(outputSize, Long.SIZE)
+      );
+    }
+    this.inputSize = inputSize;
+    this.outputSize = outputSize;
+    this.seed = seed;
+    this.instructionIndex = instructionIndex;
+  }
+
+  public PackedSemantics cached() {
+    return PackedSemantics.lazy(inputSize, outputSize, this::word);
+  }
+
+  @Override
+  public boolean[] get(int index) {
+    return Utils.wordToBitString(word(index), outputSize);
+  }
+
+  public int inputSize() {
+    return inputSize;
+  }
+
+  public long seed() {
+    return seed;
+  }
+
+  public int instructionIndex() {
+    return instructionIndex;
+  }
+
+  public PackedSemantics materialize() {
+    return cached().materialize();
+  }
+
+  @Override
+  public int outputSize() {
+    return outputSize;
+  }
+
+  @Override
+  public int size() {
+    return 1 << inputSize;
+  }
+
+  @Override
+  public long word(int index) {
+    Objects.checkIndex(index, size());
+    long word = Utils.counterHash(seed, instructionIndex, index);
+    return (outputSize == Long.SIZE) ? word : (word & ((1L << outputSize) - 1));
+  }
+}
@@ -0,0 +1,206 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smpsim-core
+ * %%
+ * Copyright (C) 2018 - 2026 Eric Medvet
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package io.github.ericmedvet.smpsim.core;
+
+import io.github.ericmedvet.smpsim.core.Instruction.Continuation;
+import io.github.ericmedvet.smpsim.core.Instruction.Movement;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+// counts which instructions, semantics cases, continuations and movements fire; continuations are counted as they
+// happened, a denied replication being a NONE; counters are striped, hence exact also when the same environment steps
+// many states in parallel
+public class Profiler implements StepObserver {
+
+  private final List<Instruction> instructions;
+  private final LongAdder[] instructionCounts;
+  private final Map<Long, LongAdder> inputCounts;
+  private final LongAdder[] continuationCounts;
+  private final LongAdder nOfDeniedReplications;
+  private final LongAdder nOfSteps;
+  private final LongAdder nOfWrites;
+
+  public Profiler(List<Instruction> instructions) {
+    this.instructions = instructions;
+    instructionCounts = newAdders(instructions.size());
+    inputCounts = new ConcurrentHashMap<>();
+    continuationCounts = newAdders(Continuation.values().length);
+    nOfDeniedReplications = new LongAdder();
+    nOfSteps = new LongAdder();
+    nOfWrites = new LongAdder();
+  }
+
+  public record Report(
+      long nOfSteps,
+      long nOfWrites,
+      long nOfDeniedReplications,
+      List<Instruction> instructions,
+      long[] instructionCounts,
+      Map<Case, Long> caseCounts,
+      Map<Continuation, Long> continuationCounts,
+      Map<List<Movement>, Long> movementCounts
+  ) {
+
+    public Report {
+      instructions = List.copyOf(instructions);
+      instructionCounts = instructionCounts.clone();
+      // copies keep the order of the entries
+      caseCounts = Collections.unmodifiableMap(new LinkedHashMap<>(caseCounts));
+      continuationCounts = Collections.unmodifiableMap(new LinkedHashMap<>(continuationCounts));
+      movementCounts = Collections.unmodifiableMap(new LinkedHashMap<>(movementCounts));
+    }
+
+    @Override
+    public long[] instructionCounts() {
+      return instructionCounts.clone();
+    }
+
+    // sorted by decreasing count
+    public List<Case> hottestCases(int n) {
+      return caseCounts.entrySet()
+          .stream()
+          .sorted(Map.Entry.<Case, Long>comparingByValue().reversed())
+          .limit(n)
+          .map(Map.Entry::getKey)
+          .toList();
+    }
+
+    // tab-separated lines: kind, key, count
+    public void writeTo(Writer writer) throws IOException {
+      writer.write("steps\t\t%d%n".formatted(nOfSteps));
+      writer.write("writes\t\t%d%n".formatted(nOfWrites));
+      for (int i = 0; i < instructionCounts.length; i = i + 1) {
+        writer.write(
+            "instruction\t%d:%s:%s\t%d%n".formatted(
+                i,
+                instructions.get(i).continuation(),
+                instructions.get(i).movements(),
+                instructionCounts[i]
+            )
+        );
+      }
+      for (Map.Entry<Continuation, Long> entry : continuationCounts.entrySet()) {
+        writer.write("continuation\t%s\t%d%n".formatted(entry.getKey(), entry.getValue()));
+      }
+      writer.write("replication\tgranted\t%d%n".formatted(continuationCounts.get(Continuation.REPLICATION)));
+      writer.write("replication\tdenied\t%d%n".formatted(nOfDeniedReplications));
+      for (Map.Entry<List<Movement>, Long> entry : movementCounts.entrySet()) {
+        writer.write("movement\t%s\t%d%n".formatted(entry.getKey(), entry.getValue()));
+      }
+      for (Case c : hottestCases(caseCounts.size())) {
+        writer.write("case\t%d:%d\t%d%n".formatted(c.instructionIndex, c.input, caseCounts.get(c)));
+      }
+      writer.flush();
+    }
+  }
+
+  public record Case(int instructionIndex, int input) {
+
+  }
+
+  private static long key(int instructionIndex, int input) {
+    return ((long) instructionIndex << Integer.SIZE) | (input & 0xFFFFFFFFL);
+  }
+
+  private static LongAdder[] newAdders(int n) {
+    LongAdder[] adders = new LongAdder[n];
+    for (int i = 0; i < n; i = i + 1) {
+      adders[i] = new LongAdder();
+    }
+    return adders;
+  }
+
+  @Override
+  public void processed(int instructionIndex, int input) {
+    instructionCounts[instructionIndex].increment();
+    // replications are counted when granted or denied
+    if (!instructions.get(instructionIndex).continuation().equals(Continuation.REPLICATION)) {
+      continuationCounts[instructions.get(instructionIndex).continuation().ordinal()].increment();
+    }
+    if (input >= 0) {
+      inputCounts.computeIfAbsent(key(instructionIndex, input), _ -> new LongAdder()).increment();
+    }
+  }
+
+  @Override
+  public void replicated(int instructionIndex, boolean isGranted) {
+    if (isGranted) {
+      continuationCounts[Continuation.REPLICATION.ordinal()].increment();
+    } else {
+      continuationCounts[Continuation.NONE.ordinal()].increment();
+      nOfDeniedReplications.increment();
+    }
+  }
+
+  public Report report() {
+    long[] counts = new long[instructionCounts.length];
+    Map<List<Movement>, Long> movementCounts = new LinkedHashMap<>();
+    for (int i = 0; i < counts.length; i = i + 1) {
+      counts[i] = instructionCounts[i].sum();
+      // individuals dying do not move
+      if (!instructions.get(i).continuation().equals(Continuation.DEATH)) {
+        movementCounts.merge(instructions.get(i).movements(), counts[i], Long::sum);
+      }
+    }
+    Map<Continuation, Long> continuations = new LinkedHashMap<>();
+    for (Continuation continuation : Continuation.values()) {
+      continuations.put(continuation, continuationCounts[continuation.ordinal()].sum());
+    }
+    Map<Case, Long> caseCounts = inputCounts.entrySet()
+        .stream()
+        .sorted(Map.Entry.comparingByKey(Comparator.naturalOrder()))
+        .collect(
+            Collectors.toMap(
+                e -> new Case((int) (e.getKey() >>> Integer.SIZE), (int) (long) e.getKey()),
+                e -> e.getValue().sum(),
+                Long::sum,
+                LinkedHashMap::new
+            )
+        );
+    return new Report(
+        nOfSteps.sum(),
+        nOfWrites.sum(),
+        nOfDeniedReplications.sum(),
+        instructions,
+        counts,
+        caseCounts,
+        continuations,
+        movementCounts
+    );
+  }
+
+  @Override
+  public void stepped(long k, int nOfIndividuals, int nOfFilledCells, int nOfBirths, int nOfDeaths) {
+    nOfSteps.increment();
+  }
+
+  @Override
+  public void written(long cell, long oldWord, long newWord) {
+    nOfWrites.increment();
+  }
+}
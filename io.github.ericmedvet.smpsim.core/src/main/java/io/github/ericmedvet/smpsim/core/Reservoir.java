@@ -0,0 +1,74 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smpsim-core
+ * %%
+ * Copyright (C) 2018 - 2026 Eric Medvet
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package io.github.ericmedvet.smpsim.core;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+import java.util.random.RandomGenerator;
+
+// uniform sample of fixed size of a stream of unknown length (Vitter's algorithm R)
+public class Reservoir implements LongConsumer {
+
+  private final long[] values;
+  private final RandomGenerator rg;
+  private long n;
+
+  public Reservoir(int size, RandomGenerator rg) {
+    if (size < 1) {
+      throw new IllegalArgumentException("Wrong reservoir size: %d < 1".formatted(size));
+    }
+    values = new long[size];
+    this.rg = rg;
+  }
+
+  @Override
+  public void accept(long value) {
+    if (n < values.length) {
+      values[(int) n] = value;
+    } else {
+      long j = rg.nextLong(n + 1);
+      if (j < values.length) {
+        values[(int) j] = value;
+      }
+    }
+    n = n + 1;
+  }
+
+  public long n() {
+    return n;
+  }
+
+  // the q-quantile of the sample, with q in [0,1]
+  public long quantile(double q) {
+    if (q < 0 || q > 1) {
+      throw new IllegalArgumentException("Wrong quantile: %f not in [0,1]".formatted(q));
+    }
+    long[] sorted = values();
+    if (sorted.length == 0) {
+      throw new IllegalStateException("Empty reservoir");
+    }
+    Arrays.sort(sorted);
+    return sorted[(int) Math.round(q * (sorted.length - 1))];
+  }
+
+  public long[] values() {
+    return Arrays.copyOf(values, (int) Math.min(n, values.length));
+  }
+}
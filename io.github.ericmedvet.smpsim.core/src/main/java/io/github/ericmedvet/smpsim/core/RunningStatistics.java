@@ -0,0 +1,72 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smpsim-core
+ * %%
+ * Copyright (C) 2018 - 2026 Eric Medvet
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package io.github.ericmedvet.smpsim.core;
+
+import java.util.function.DoubleConsumer;
+
+// mean and variance with Welford's algorithm: constant memory, numerically stable
+public class RunningStatistics implements DoubleConsumer {
+
+  private long n;
+  private double mean;
+  private double m2;
+  private double min = Double.POSITIVE_INFINITY;
+  private double max = Double.NEGATIVE_INFINITY;
+
+  @Override
+  public void accept(double value) {
+    n = n + 1;
+    double delta = value - mean;
+    mean = mean + delta / n;
+    m2 = m2 + delta * (value - mean);
+    min = Math.min(min, value);
+    max = Math.max(max, value);
+  }
+
+  public double max() {
+    return (n == 0) ? Double.NaN : max;
+  }
+
+  public double mean() {
+    return (n == 0) ? Double.NaN : mean;
+  }
+
+  public double min() {
+    return (n == 0) ? Double.NaN : min;
+  }
+
+  public long n() {
+    return n;
+  }
+
+  public double standardDeviation() {
+    return Math.sqrt(variance());
+  }
+
+  @Override
+  public String toString() {
+    return "n=%d mean=%.3f sd=%.3f min=%.3f max=%.3f".formatted(n, mean(), standardDeviation(), min(), max());
+  }
+
+  // sample variance
+  public double variance() {
+    return (n < 2) ? Double.NaN : (m2 / (n - 1));
+  }
+}
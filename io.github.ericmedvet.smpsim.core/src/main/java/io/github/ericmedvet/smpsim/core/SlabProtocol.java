@@ -0,0 +1,142 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smpsim-core
+ * %%
+ * Copyright (C) 2018 - 2026 Eric Medvet
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package io.github.ericmedvet.smpsim.core;
+
+import io.github.ericmedvet.smpsim.core.Environment.Configuration;
+import io.github.ericmedvet.smpsim.core.Instruction.Continuation;
+import io.github.ericmedvet.smpsim.core.Instruction.Movement;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// messages exchanged between the coordinator (DistributedEnvironment) and the slab workers
+final class SlabProtocol {
+
+  static final byte INIT = 1;
+  static final byte CONTINUATIONS = 2;
+  static final byte EXECUTE = 3;
+  static final byte IMMIGRATE = 4;
+  static final byte GATHER = 5;
+  static final byte STOP = 6;
+
+  private SlabProtocol() {
+  }
+
+  record Ranked(int position, Individual individual) {
+
+  }
+
+  // slabs split the last coordinate
+  static int[] boundaries(Location maxLocation, int nOfSlabs) {
+    int max = maxLocation.coords()[maxLocation.coords().length - 1];
+    if (nOfSlabs < 1 || nOfSlabs > max) {
+      throw new IllegalArgumentException("Wrong number of slabs: %d not in [1,%d]".formatted(nOfSlabs, max));
+    }
+    int[] boundaries = new int[nOfSlabs + 1];
+    for (int i = 0; i <= nOfSlabs; i = i + 1) {
+      boundaries[i] = (int) ((long) max * i / nOfSlabs);
+    }
+    return boundaries;
+  }
+
+  static int slab(int[] boundaries, Location location) {
+    int c = location.coords()[location.coords().length - 1];
+    for (int i = 0; i < boundaries.length - 1; i = i + 1) {
+      if (c < boundaries[i + 1]) {
+        return i;
+      }
+    }
+    throw new IllegalArgumentException("Wrong location: %s out of slabs".formatted(location));
+  }
+
+  static Instruction readInstruction(DataInputStream input) throws IOException {
+    int nOfDimensions = input.readInt();
+    int inputSize = input.readInt();
+    int outputSize = input.readInt();
+    Continuation continuation = Continuation.values()[input.readInt()];
+    List<Movement> movements = new ArrayList<>(nOfDimensions);
+    for (int i = 0; i < nOfDimensions; i = i + 1) {
+      movements.add(Movement.values()[input.readInt()]);
+    }
+    if (input.readBoolean()) {
+      long seed = input.readLong();
+      int index = input.readInt();
+      return new Instruction(
+          continuation,
+          List.copyOf(movements),
+          new ProceduralSemantics(inputSize, outputSize, seed, index)
+      );
+    }
+    return new Instruction(
+        continuation,
+        List.copyOf(movements),
+        PackedSemantics.readFrom(input, inputSize, outputSize)
+    );
+  }
+
+  static List<Ranked> readRankedIndividuals(
+      DataInputStream input,
+      Configuration configuration
+  ) throws IOException {
+    int n = input.readInt();
+    List<Ranked> individuals = new ArrayList<>(n);
+    for (int i = 0; i < n; i = i + 1) {
+      int position = input.readInt();
+      individuals.add(new Ranked(position, StateSerializer.readIndividual(input, configuration)));
+    }
+    return individuals;
+  }
+
+  // the header is always sent; procedural semantics are sent as their seed, the other ones as packed tables
+  static void writeInstruction(DataOutputStream output, Instruction instruction) throws IOException {
+    output.writeInt(instruction.movements().size());
+    output.writeInt(instruction.inputSize());
+    output.writeInt(instruction.outputSize());
+    output.writeInt(instruction.continuation().ordinal());
+    for (Movement movement : instruction.movements()) {
+      output.writeInt(movement.ordinal());
+    }
+    output.writeBoolean(instruction.semantics() instanceof ProceduralSemantics);
+    if (instruction.semantics() instanceof ProceduralSemantics semantics) {
+      output.writeLong(semantics.seed());
+      output.writeInt(semantics.instructionIndex());
+    } else if (instruction.semantics() instanceof PackedSemantics semantics) {
+      semantics.writeTo(output);
+    } else {
+      // other tables are packed on the fly, a page at a time
+      PackedSemantics.lazy(
+          instruction.inputSize(),
+          instruction.outputSize(),
+          i -> (instruction.semantics() instanceof WordSemantics semantics) ? semantics.word(i) : Utils
+              .bitStringToWord(instruction.semantics().get(i))
+      ).writeTo(output);
+    }
+  }
+
+  static void writeRankedIndividuals(DataOutputStream output, List<Ranked> individuals) throws IOException {
+    output.writeInt(individuals.size());
+    for (Ranked ranked : individuals) {
+      output.writeInt(ranked.position);
+      StateSerializer.writeIndividual(output, ranked.individual);
+    }
+  }
+}
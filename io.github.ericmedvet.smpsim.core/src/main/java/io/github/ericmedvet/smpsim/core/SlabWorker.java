@@ -0,0 +1,247 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smpsim-core
+ * %%
+ * Copyright (C) 2018 - 2026 Eric Medvet
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package io.github.ericmedvet.smpsim.core;
+
+import io.github.ericmedvet.smpsim.core.Environment.Configuration;
+import io.github.ericmedvet.smpsim.core.Instruction.Continuation;
+import io.github.ericmedvet.smpsim.core.SlabProtocol.Ranked;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+// steps the individuals within one slab; all the individuals sharing a location are in the same slab, hence the
+// slab needs no data from the other ones: only the replication decisions (global) and the migrants are exchanged
+public class SlabWorker {
+
+  private final Configuration configuration;
+  private final Environment environment;
+  private final int from;
+  private final int to;
+  private final long lastStride;
+  private SparseGrid grid;
+  private long k;
+  // the individuals of the slab, sorted by their position in the global population
+  private Population population;
+  private int[] positions;
+  private Continuation[] continuations;
+
+  private SlabWorker(
+      Configuration configuration,
+      List<Instruction> instructions,
+      int from,
+      int to,
+      SparseGrid grid,
+      long k,
+      List<Ranked> individuals
+  ) {
+    this.configuration = configuration;
+    this.from = from;
+    this.to = to;
+    this.grid = grid;
+    this.k = k;
+    environment = new Environment(configuration, instructions);
+    int[] coords = configuration.maxLocation().coords();
+    long stride = 1;
+    for (int i = 0; i < coords.length - 1; i = i + 1) {
+      stride = stride * coords[i];
+    }
+    lastStride = stride;
+    population = new Population(configuration.maxLocation(), configuration.individualMemorySize());
+    positions = new int[0];
+    immigrate(individuals);
+  }
+
+  static void connect(String host, int port) throws IOException {
+    try (Socket socket = new Socket(host, port)) {
+      socket.setTcpNoDelay(true);
+      serve(
+          new DataInputStream(new BufferedInputStream(socket.getInputStream())),
+          new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))
+      );
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      throw new IllegalArgumentException("Usage: SlabWorker <host> <port>");
+    }
+    connect(args[0], Integer.parseInt(args[1]));
+  }
+
+  private static SlabWorker init(DataInputStream input) throws IOException {
+    Configuration configuration = StateSerializer.readConfiguration(input);
+    long k = input.readLong();
+    int from = input.readInt();
+    int to = input.readInt();
+    int nOfInstructions = input.readInt();
+    List<Instruction> instructions = new ArrayList<>(nOfInstructions);
+    for (int i = 0; i < nOfInstructions; i = i + 1) {
+      instructions.add(SlabProtocol.readInstruction(input));
+    }
+    SparseGrid grid = SparseGrid.readFrom(input);
+    List<Ranked> individuals = SlabProtocol.readRankedIndividuals(input, configuration);
+    return new SlabWorker(configuration, List.copyOf(instructions), from, to, grid, k, individuals);
+  }
+
+  private static void serve(DataInputStream input, DataOutputStream output) throws IOException {
+    SlabWorker worker = null;
+    while (true) {
+      byte command = input.readByte();
+      if (command == SlabProtocol.INIT) {
+        worker = init(input);
+        continue;
+      }
+      if (worker == null) {
+        throw new IOException("Command %d before init".formatted(command));
+      }
+      switch (command) {
+        case SlabProtocol.CONTINUATIONS -> worker.continuations(output);
+        case SlabProtocol.EXECUTE -> worker.execute(input, output);
+        case SlabProtocol.IMMIGRATE -> worker.immigrate(input);
+        case SlabProtocol.GATHER -> worker.gather(output);
+        case SlabProtocol.STOP -> {
+          return;
+        }
+        default -> throw new IOException("Unknown command %d".formatted(command));
+      }
+      output.flush();
+    }
+  }
+
+  // keeps the individuals within the slab, sorted by position, and returns the other ones
+  private List<Ranked> arrange(Population newPopulation, int[] newPositions) {
+    List<Ranked> emigrants = new ArrayList<>();
+    long[] order = new long[newPopulation.size()];
+    int nOfStaying = 0;
+    for (int i = 0; i < newPopulation.size(); i = i + 1) {
+      if (isWithin(newPopulation.cell(i))) {
+        order[nOfStaying] = ((long) newPositions[i] << Integer.SIZE) | i;
+        nOfStaying = nOfStaying + 1;
+      } else {
+        emigrants.add(new Ranked(newPositions[i], newPopulation.get(i)));
+      }
+    }
+    Arrays.sort(order, 0, nOfStaying);
+    population = new Population(configuration.maxLocation(), configuration.individualMemorySize());
+    positions = new int[nOfStaying];
+    for (int i = 0; i < nOfStaying; i = i + 1) {
+      int j = (int) order[i];
+      population.add(newPopulation.cell(j), newPopulation.kOfBirth(j), newPopulation.memory(j));
+      positions[i] = newPositions[j];
+    }
+    return emigrants;
+  }
+
+  private void continuations(DataOutputStream output) throws IOException {
+    continuations = environment.continuations(grid, population);
+    output.writeInt(population.size());
+    for (int i = 0; i < population.size(); i = i + 1) {
+      output.writeInt(positions[i]);
+      output.writeByte(continuations[i].ordinal());
+    }
+  }
+
+  private void execute(DataInputStream input, DataOutputStream output) throws IOException {
+    int n = input.readInt();
+    if (n != population.size()) {
+      throw new IOException("Wrong number of decisions: %d != %d".formatted(n, population.size()));
+    }
+    boolean[] replications = new boolean[n];
+    int[] newPositions = new int[n];
+    int[] childPositions = new int[n];
+    for (int i = 0; i < n; i = i + 1) {
+      replications[i] = input.readBoolean();
+      newPositions[i] = input.readInt();
+      childPositions[i] = input.readInt();
+    }
+    grid = environment.execute(grid, population, replications, k);
+    // survivors come in the order of the individuals, then children
+    int[] executedPositions = new int[population.size()];
+    int j = 0;
+    for (int i = 0; i < n; i = i + 1) {
+      if (!continuations[i].equals(Continuation.DEATH)) {
+        executedPositions[j] = newPositions[i];
+        j = j + 1;
+      }
+    }
+    for (int i = 0; i < n; i = i + 1) {
+      if (replications[i]) {
+        executedPositions[j] = childPositions[i];
+        j = j + 1;
+      }
+    }
+    List<Ranked> emigrants = arrange(population, executedPositions);
+    k = k + 1;
+    SlabProtocol.writeRankedIndividuals(output, emigrants);
+  }
+
+  private void gather(DataOutputStream output) throws IOException {
+    List<Map.Entry<Location, boolean[]>> cells = grid.written()
+        .entrySet()
+        .stream()
+        .filter(e -> isWithin(e.getKey()))
+        .toList();
+    output.writeInt(cells.size());
+    for (Map.Entry<Location, boolean[]> cell : cells) {
+      StateSerializer.writeLocation(output, cell.getKey(), false);
+      output.writeLong(Utils.bitStringToWord(cell.getValue()));
+    }
+    List<Ranked> individuals = new ArrayList<>(population.size());
+    for (int i = 0; i < population.size(); i = i + 1) {
+      individuals.add(new Ranked(positions[i], population.get(i)));
+    }
+    SlabProtocol.writeRankedIndividuals(output, individuals);
+  }
+
+  private void immigrate(DataInputStream input) throws IOException {
+    immigrate(SlabProtocol.readRankedIndividuals(input, configuration));
+  }
+
+  private void immigrate(List<Ranked> immigrants) {
+    int[] newPositions = Arrays.copyOf(positions, positions.length + immigrants.size());
+    for (int i = 0; i < immigrants.size(); i = i + 1) {
+      Individual individual = immigrants.get(i).individual();
+      population.add(
+          individual.location().index(configuration.maxLocation()),
+          individual.kOfBirth(),
+          Utils.bitStringToWord(individual.memory())
+      );
+      newPositions[positions.length + i] = immigrants.get(i).position();
+    }
+    arrange(population, newPositions);
+  }
+
+  private boolean isWithin(long cell) {
+    long c = cell / lastStride;
+    return c >= from && c < to;
+  }
+
+  private boolean isWithin(Location location) {
+    int c = location.coords()[location.coords().length - 1];
+    return c >= from && c < to;
+  }
+}
@@ -0,0 +1,393 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smpsim-core
+ * %%
+ * Copyright (C) 2018 - 2026 Eric Medvet
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package io.github.ericmedvet.smpsim.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+// cells are stored in tiles, allocated (and filled with the default value) on first write; tiles are shared
+// between grids and copied only when written
+public class SparseGrid extends AbstractMap<Location, boolean[]> {
+
+  private static final int TILE_BITS = 8;
+
+  private final Location maxLocation;
+  private final boolean[] defaultValue;
+  private final long defaultWord;
+  private final int tileSide;
+  private final long[] nOfTiles;
+  private final Directory directory;
+
+  public SparseGrid(Location maxLocation, boolean[] defaultValue) {
+    if (defaultValue.length > Long.SIZE) {
+      throw new IllegalArgumentException(
+          "Wrong data size: %d > %d".formatted(defaultValue.length, Long.SIZE)
+      );
+    }
+    this.maxLocation = maxLocation;
+    this.defaultValue = defaultValue.clone();
+    defaultWord = Utils.bitStringToWord(defaultValue);
+    tileSide = Math.max(1, TILE_BITS / maxLocation.coords().length);
+    nOfTiles = Arrays.stream(maxLocation.coords())
+        .mapToLong(c -> (c + (1L << tileSide) - 1) >> tileSide)
+        .toArray();
+    try {
+      Arrays.stream(maxLocation.coords()).asLongStream().reduce(1, Math::multiplyExact);
+    } catch (ArithmeticException e) {
+      throw new IllegalArgumentException("Wrong grid bounds: too many cells in %s".formatted(maxLocation), e);
+    }
+    directory = new Directory(16);
+  }
+
+  private SparseGrid(SparseGrid grid, Directory directory) {
+    maxLocation = grid.maxLocation;
+    defaultValue = grid.defaultValue;
+    defaultWord = grid.defaultWord;
+    tileSide = grid.tileSide;
+    nOfTiles = grid.nOfTiles;
+    this.directory = directory;
+  }
+
+  // open addressing (linear probing) map from tile keys to tiles
+  private static final class Directory {
+
+    private final long[] keys;
+    private final long[][] tiles;
+    private int size;
+
+    private Directory(int capacity) {
+      keys = new long[capacity];
+      tiles = new long[capacity][];
+      Arrays.fill(keys, -1);
+    }
+
+    private Directory(Directory directory) {
+      keys = directory.keys.clone();
+      tiles = directory.tiles.clone();
+      size = directory.size;
+    }
+
+    private int slot(long key) {
+      int mask = keys.length - 1;
+      int slot = (int) (Utils.counterHash(key) & mask);
+      while (keys[slot] != -1 && keys[slot] != key) {
+        slot = (slot + 1) & mask;
+      }
+      return slot;
+    }
+
+    long[] get(long key) {
+      return tiles[slot(key)];
+    }
+
+    // the copy can receive the given number of new tiles without resizing
+    Directory copy(int nOfNewTiles) {
+      if ((size + nOfNewTiles) * 2 <= keys.length) {
+        return new Directory(this);
+      }
+      int capacity = keys.length;
+      while ((size + nOfNewTiles) * 2 > capacity) {
+        capacity = capacity * 2;
+      }
+      Directory directory = new Directory(capacity);
+      for (int i = 0; i < keys.length; i = i + 1) {
+        if (keys[i] != -1) {
+          directory.put(keys[i], tiles[i]);
+        }
+      }
+      return directory;
+    }
+
+    void put(long key, long[] tile) {
+      int slot = slot(key);
+      if (keys[slot] == -1) {
+        size = size + 1;
+      }
+      keys[slot] = key;
+      tiles[slot] = tile;
+    }
+  }
+
+  public static SparseGrid of(Location maxLocation, boolean[] defaultValue, Map<Location, boolean[]> data) {
+    return new SparseGrid(maxLocation, defaultValue).with(data);
+  }
+
+  public static SparseGrid readFrom(DataInput input) throws IOException {
+    int[] coords = new int[input.readInt()];
+    for (int i = 0; i < coords.length; i = i + 1) {
+      coords[i] = input.readInt();
+    }
+    boolean[] defaultValue = Utils.wordToBitString(input.readLong(), input.readInt());
+    SparseGrid grid = new SparseGrid(new Location(coords), defaultValue);
+    int nOfStoredTiles = input.readInt();
+    Directory directory = grid.directory.copy(nOfStoredTiles);
+    int tileLength = grid.tileLength();
+    for (int i = 0; i < nOfStoredTiles; i = i + 1) {
+      long key = input.readLong();
+      long[] tile = new long[tileLength];
+      for (int j = 0; j < tileLength; j = j + 1) {
+        tile[j] = input.readLong();
+      }
+      directory.put(key, tile);
+    }
+    return new SparseGrid(grid, directory);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return isWithin(key);
+  }
+
+  public int dataSize() {
+    return defaultValue.length;
+  }
+
+  public boolean[] defaultValue() {
+    return defaultValue.clone();
+  }
+
+  @Override
+  public Set<Entry<Location, boolean[]>> entrySet() {
+    return new AbstractSet<>() {
+      @Override
+      public Iterator<Entry<Location, boolean[]>> iterator() {
+        Iterator<Location> iterator = maxLocation.boundedLocationsIterator();
+        return new Iterator<>() {
+          @Override
+          public boolean hasNext() {
+            return iterator.hasNext();
+          }
+
+          @Override
+          public Entry<Location, boolean[]> next() {
+            Location l = iterator.next();
+            return new SimpleImmutableEntry<>(l, get(l));
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return SparseGrid.this.size();
+      }
+    };
+  }
+
+  @Override
+  public boolean[] get(Object key) {
+    if (!isWithin(key)) {
+      return null;
+    }
+    Location l = (Location) key;
+    long[] tile = directory.get(tileKey(l.coords()));
+    if (tile == null) {
+      return defaultValue.clone();
+    }
+    return Utils.wordToBitString(tile[tileOffset(l.coords())], defaultValue.length);
+  }
+
+  private boolean isWithin(Object key) {
+    return key instanceof Location l && l.coords().length == maxLocation.coords().length && l.isWithin(maxLocation);
+  }
+
+  public Location maxLocation() {
+    return maxLocation;
+  }
+
+  public int nOfStoredTiles() {
+    return directory.size;
+  }
+
+  @Override
+  public int size() {
+    long size = Arrays.stream(maxLocation.coords()).asLongStream().reduce(1, (n1, n2) -> n1 * n2);
+    return (int) Math.min(size, Integer.MAX_VALUE);
+  }
+
+  private long tileKey(int[] coords) {
+    long key = 0;
+    for (int i = coords.length - 1; i >= 0; i = i - 1) {
+      key = key * nOfTiles[i] + (coords[i] >> tileSide);
+    }
+    return key;
+  }
+
+  private long tileKey(long cell) {
+    long key = 0;
+    long keyStride = 1;
+    for (int i = 0; i < nOfTiles.length; i = i + 1) {
+      int c = (int) (cell % maxLocation.coords()[i]);
+      cell = cell / maxLocation.coords()[i];
+      key = key + (c >> tileSide) * keyStride;
+      keyStride = keyStride * nOfTiles[i];
+    }
+    return key;
+  }
+
+  private int tileLength() {
+    return 1 << (tileSide * maxLocation.coords().length);
+  }
+
+  private int tileOffset(int[] coords) {
+    int offset = 0;
+    for (int i = coords.length - 1; i >= 0; i = i - 1) {
+      offset = (offset << tileSide) | (coords[i] & ((1 << tileSide) - 1));
+    }
+    return offset;
+  }
+
+  private int tileOffset(long cell) {
+    int offset = 0;
+    for (int i = 0; i < nOfTiles.length; i = i + 1) {
+      int c = (int) (cell % maxLocation.coords()[i]);
+      cell = cell / maxLocation.coords()[i];
+      offset = offset | ((c & ((1 << tileSide) - 1)) << (i * tileSide));
+    }
+    return offset;
+  }
+
+  // the hot read of stepping: tile key and offset are computed in one pass over the coordinates
+  public long word(long cell) {
+    long key = 0;
+    long keyStride = 1;
+    int offset = 0;
+    for (int i = 0; i < nOfTiles.length; i = i + 1) {
+      int c = (int) (cell % maxLocation.coords()[i]);
+      cell = cell / maxLocation.coords()[i];
+      key = key + (c >> tileSide) * keyStride;
+      keyStride = keyStride * nOfTiles[i];
+      offset = offset | ((c & ((1 << tileSide) - 1)) << (i * tileSide));
+    }
+    long[] tile = directory.get(key);
+    return (tile == null) ? defaultWord : tile[offset];
+  }
+
+  public long word(Location location) {
+    if (!isWithin(location)) {
+      throw new IllegalArgumentException(
+          "Wrong location: %s not within %s".formatted(location, maxLocation)
+      );
+    }
+    long[] tile = directory.get(tileKey(location.coords()));
+    return (tile == null) ? defaultWord : tile[tileOffset(location.coords())];
+  }
+
+  public SparseGrid with(Map<Location, boolean[]> changes) {
+    long[] cells = new long[changes.size()];
+    long[] words = new long[changes.size()];
+    int n = 0;
+    for (Entry<Location, boolean[]> change : changes.entrySet()) {
+      if (!isWithin(change.getKey())) {
+        throw new IllegalArgumentException(
+            "Wrong location: %s not within %s".formatted(change.getKey(), maxLocation)
+        );
+      }
+      if (change.getValue().length != defaultValue.length) {
+        throw new IllegalArgumentException(
+            "Wrong data size: %d != %d".formatted(change.getValue().length, defaultValue.length)
+        );
+      }
+      cells[n] = change.getKey().index(maxLocation);
+      words[n] = Utils.bitStringToWord(change.getValue());
+      n = n + 1;
+    }
+    return with(cells, words, n);
+  }
+
+  // the first n cells (linear indexes, see Location.index()) take the corresponding words
+  public SparseGrid with(long[] cells, long[] words, int n) {
+    if (n == 0) {
+      return this;
+    }
+    Directory newDirectory = directory.copy(n);
+    Map<Long, long[]> copiedTiles = new HashMap<>();
+    for (int i = 0; i < n; i = i + 1) {
+      long key = tileKey(cells[i]);
+      long[] tile = copiedTiles.get(key);
+      if (tile == null) {
+        long[] sharedTile = directory.get(key);
+        if (sharedTile == null) {
+          tile = new long[tileLength()];
+          Arrays.fill(tile, defaultWord);
+        } else {
+          tile = sharedTile.clone();
+        }
+        copiedTiles.put(key, tile);
+        newDirectory.put(key, tile);
+      }
+      tile[tileOffset(cells[i])] = words[i];
+    }
+    return new SparseGrid(this, newDirectory);
+  }
+
+  public void writeTo(DataOutput output) throws IOException {
+    output.writeInt(maxLocation.coords().length);
+    for (int c : maxLocation.coords()) {
+      output.writeInt(c);
+    }
+    output.writeLong(defaultWord);
+    output.writeInt(defaultValue.length);
+    output.writeInt(directory.size);
+    for (int i = 0; i < directory.keys.length; i = i + 1) {
+      if (directory.keys[i] != -1) {
+        output.writeLong(directory.keys[i]);
+        for (long word : directory.tiles[i]) {
+          output.writeLong(word);
+        }
+      }
+    }
+  }
+
+  // the cells in stored tiles, i.e., at least all the written ones
+  public Map<Location, boolean[]> written() {
+    Map<Location, boolean[]> written = new HashMap<>();
+    int nOfDimensions = maxLocation.coords().length;
+    for (int i = 0; i < directory.keys.length; i = i + 1) {
+      if (directory.keys[i] == -1) {
+        continue;
+      }
+      int[] tileCoords = new int[nOfDimensions];
+      long key = directory.keys[i];
+      for (int d = 0; d < nOfDimensions; d = d + 1) {
+        tileCoords[d] = (int) (key % nOfTiles[d]);
+        key = key / nOfTiles[d];
+      }
+      for (int offset = 0; offset < tileLength(); offset = offset + 1) {
+        int[] coords = new int[nOfDimensions];
+        for (int d = 0; d < nOfDimensions; d = d + 1) {
+          coords[d] = (tileCoords[d] << tileSide) | ((offset >> (d * tileSide)) & ((1 << tileSide) - 1));
+        }
+        Location l = new Location(coords);
+        if (l.isWithin(maxLocation)) {
+          written.put(l, Utils.wordToBitString(directory.tiles[i][offset], defaultValue.length));
+        }
+      }
+    }
+    return written;
+  }
+}
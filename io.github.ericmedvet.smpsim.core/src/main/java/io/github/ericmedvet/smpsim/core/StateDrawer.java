@@ -30,6 +30,7 @@ import java.awt.Graphics2D;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.Rectangle2D;
 import java.util.EnumSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -56,8 +57,14 @@ public class StateDrawer implements Drawer<Environment.State> {
     double scaleY = (double) g.getClipBounds().height / (double) envH;
     ColorRange colorRange = new ColorRange(c.cellMinColor, c.cellMaxColor);
     DoubleRange dataRange = new DoubleRange(0, Math.powExact(2, state.configuration().dataSize()));
-    // draw cells
-    state.data().forEach((l, bs) -> {
+    // draw cells (for sparse grids, the background and then only the stored ones)
+    Map<Location, boolean[]> cells = state.data();
+    if (state.data() instanceof SparseGrid sparseGrid) {
+      g.setColor(colorRange.interpolate(dataRange.normalize(Utils.bitStringToInt(sparseGrid.defaultValue()))));
+      g.fill(new Rectangle2D.Double(0, 0, envW * scaleX, envH * scaleY));
+      cells = sparseGrid.written();
+    }
+    cells.forEach((l, bs) -> {
       g.setColor(colorRange.interpolate(dataRange.normalize(Utils.bitStringToInt(bs))));
       g.fill(
           new Rectangle2D.Double(
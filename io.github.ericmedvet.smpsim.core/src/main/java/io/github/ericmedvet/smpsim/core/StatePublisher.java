@@ -0,0 +1,262 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smpsim-core
+ * %%
+ * Copyright (C) 2018 - 2026 Eric Medvet
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package io.github.ericmedvet.smpsim.core;
+
+import io.github.ericmedvet.smpsim.core.Environment.State;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+
+// publishes the states of a run to subscribers, each with its own executor and delivery policy; states are shared,
+// not copied (stepping never modifies them), hence subscribers must not modify them
+public class StatePublisher implements Flow.Publisher<State> {
+
+  private final Environment environment;
+  private final int bufferSize;
+  private final List<Subscription> subscriptions;
+
+  public StatePublisher(Environment environment) {
+    this(environment, Flow.defaultBufferSize());
+  }
+
+  public StatePublisher(Environment environment, int bufferSize) {
+    if (bufferSize < 1) {
+      throw new IllegalArgumentException("Wrong buffer size: %d < 1".formatted(bufferSize));
+    }
+    this.environment = environment;
+    this.bufferSize = bufferSize;
+    subscriptions = new CopyOnWriteArrayList<>();
+  }
+
+  // EVERY and EVERY_NTH lose no states: when a subscriber lags by more than the buffer size, the run waits for it;
+  // CONFLATE keeps only the latest undelivered state and never makes the run wait; the last state is always delivered
+  public record Policy(Kind kind, int n) {
+
+    public Policy {
+      if (n < 1) {
+        throw new IllegalArgumentException("Wrong n: %d < 1".formatted(n));
+      }
+    }
+
+    public static Policy conflate() {
+      return new Policy(Kind.CONFLATE, 1);
+    }
+
+    public static Policy every() {
+      return new Policy(Kind.EVERY, 1);
+    }
+
+    public static Policy everyNth(int n) {
+      return new Policy(Kind.EVERY_NTH, n);
+    }
+
+    public enum Kind { EVERY, EVERY_NTH, CONFLATE }
+  }
+
+  // signals to the subscriber are serialized by running at most one drain at a time on the executor
+  private final class Subscription implements Flow.Subscription {
+
+    private final Flow.Subscriber<? super State> subscriber;
+    private final Policy policy;
+    private final Executor executor;
+    private final Deque<State> states;
+    private long demand;
+    private boolean isDraining;
+    private boolean isCancelled;
+    private boolean isCompleted;
+    private Throwable error;
+
+    private Subscription(Flow.Subscriber<? super State> subscriber, Policy policy, Executor executor) {
+      this.subscriber = subscriber;
+      this.policy = policy;
+      this.executor = executor;
+      states = new ArrayDeque<>();
+    }
+
+    @Override
+    public void cancel() {
+      synchronized (this) {
+        isCancelled = true;
+        states.clear();
+        notifyAll();
+      }
+      subscriptions.remove(this);
+    }
+
+    // the first completion wins, including the one of an illegal request
+    private void complete(Throwable throwable) {
+      synchronized (this) {
+        if (isCompleted) {
+          return;
+        }
+        isCompleted = true;
+        error = throwable;
+        schedule();
+      }
+    }
+
+    private void drain() {
+      while (true) {
+        State state = null;
+        boolean isTerminating = false;
+        Throwable terminatingError = null;
+        synchronized (this) {
+          if (isCancelled) {
+            isDraining = false;
+            return;
+          }
+          if (demand > 0 && !states.isEmpty()) {
+            state = states.poll();
+            demand = demand - 1;
+            notifyAll();
+          } else if (isCompleted && states.isEmpty()) {
+            isCancelled = true;
+            isTerminating = true;
+            terminatingError = error;
+          } else {
+            isDraining = false;
+            return;
+          }
+        }
+        try {
+          if (isTerminating) {
+            subscriptions.remove(this);
+            if (terminatingError == null) {
+              subscriber.onComplete();
+            } else {
+              subscriber.onError(terminatingError);
+            }
+          } else {
+            subscriber.onNext(state);
+          }
+        } catch (Throwable t) {
+          cancel();
+          synchronized (this) {
+            isDraining = false;
+          }
+          return;
+        }
+      }
+    }
+
+    private void offer(State state, boolean isLast) {
+      synchronized (this) {
+        if (isCancelled || isCompleted) {
+          return;
+        }
+        if (!isLast && policy.kind == Policy.Kind.EVERY_NTH && state.k() % policy.n != 0) {
+          return;
+        }
+        if (policy.kind == Policy.Kind.CONFLATE) {
+          states.clear();
+        } else {
+          while (states.size() >= bufferSize && !isCancelled) {
+            try {
+              wait();
+            } catch (InterruptedException e) {
+              // the state is dropped and the run goes on, with the interrupt status restored
+              Thread.currentThread().interrupt();
+              return;
+            }
+          }
+          if (isCancelled) {
+            return;
+          }
+        }
+        states.add(state);
+        schedule();
+      }
+    }
+
+    @Override
+    public void request(long n) {
+      synchronized (this) {
+        if (n <= 0) {
+          states.clear();
+          isCompleted = true;
+          if (error == null) {
+            error = new IllegalArgumentException("Wrong request: %d <= 0".formatted(n));
+          }
+        } else {
+          demand = (demand + n < 0) ? Long.MAX_VALUE : (demand + n);
+        }
+        schedule();
+      }
+    }
+
+    // to be called holding the lock
+    private void schedule() {
+      if (!isDraining && !isCancelled) {
+        isDraining = true;
+        executor.execute(this::drain);
+      }
+    }
+
+    private void start() {
+      synchronized (this) {
+        isDraining = true;
+      }
+      executor.execute(() -> {
+        try {
+          subscriber.onSubscribe(this);
+        } catch (Throwable t) {
+          cancel();
+        }
+        drain();
+      });
+    }
+  }
+
+  public State run(State state, Predicate<State> termination) {
+    State finalState;
+    try {
+      finalState = environment.run(state, termination, s -> publish(s, false));
+    } catch (RuntimeException e) {
+      subscriptions.forEach(s -> s.complete(e));
+      throw e;
+    }
+    publish(finalState, true);
+    subscriptions.forEach(s -> s.complete(null));
+    return finalState;
+  }
+
+  private void publish(State state, boolean isLast) {
+    for (Subscription subscription : subscriptions) {
+      subscription.offer(state, isLast);
+    }
+  }
+
+  @Override
+  public void subscribe(Flow.Subscriber<? super State> subscriber) {
+    subscribe(subscriber, Policy.every(), ForkJoinPool.commonPool());
+  }
+
+  // subscribers receive the states published after their subscription
+  public void subscribe(Flow.Subscriber<? super State> subscriber, Policy policy, Executor executor) {
+    Subscription subscription = new Subscription(subscriber, policy, executor);
+    subscriptions.add(subscription);
+    subscription.start();
+  }
+}
@@ -0,0 +1,144 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smpsim-core
+ * %%
+ * Copyright (C) 2018 - 2026 Eric Medvet
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package io.github.ericmedvet.smpsim.core;
+
+import io.github.ericmedvet.smpsim.core.Environment.Configuration;
+import io.github.ericmedvet.smpsim.core.Environment.Neighborhood;
+import io.github.ericmedvet.smpsim.core.Environment.State;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+// the data is always written as a sparse grid, hence read states are backed by sparse grids
+public class StateSerializer {
+
+  private static final int MAGIC = 0x534D5053;
+  // version 1 has no neighborhood
+  private static final int VERSION = 2;
+
+  private StateSerializer() {
+  }
+
+  static Configuration readConfiguration(DataInputStream input) throws IOException {
+    return readConfiguration(input, VERSION);
+  }
+
+  private static Configuration readConfiguration(DataInputStream input, int version) throws IOException {
+    Location maxLocation = readLocation(input, input.readInt());
+    boolean isToroidal = input.readBoolean();
+    int dataSize = input.readInt();
+    int individualMemorySize = input.readInt();
+    int maxNOfIndividuals = input.readInt();
+    if (version < 2) {
+      return new Configuration(maxLocation, isToroidal, dataSize, individualMemorySize, maxNOfIndividuals);
+    }
+    return new Configuration(
+        maxLocation,
+        isToroidal,
+        dataSize,
+        individualMemorySize,
+        maxNOfIndividuals,
+        Neighborhood.values()[input.readByte()],
+        input.readInt()
+    );
+  }
+
+  static Individual readIndividual(DataInputStream input, Configuration configuration) throws IOException {
+    Location location = readLocation(input, configuration.maxLocation().coords().length);
+    long kOfBirth = input.readLong();
+    boolean[] memory = Utils.wordToBitString(input.readLong(), configuration.individualMemorySize());
+    return new Individual(location, kOfBirth, memory);
+  }
+
+  static Location readLocation(DataInputStream input, int nOfDimensions) throws IOException {
+    int[] coords = new int[nOfDimensions];
+    for (int i = 0; i < nOfDimensions; i = i + 1) {
+      coords[i] = input.readInt();
+    }
+    return new Location(coords);
+  }
+
+  public static State read(InputStream inputStream) throws IOException {
+    DataInputStream input = new DataInputStream(inputStream);
+    int magic = input.readInt();
+    int version = input.readInt();
+    if (magic != MAGIC || version < 1 || version > VERSION) {
+      throw new IOException("Wrong header: %08x v%d".formatted(magic, version));
+    }
+    Configuration configuration = readConfiguration(input, version);
+    long k = input.readLong();
+    SparseGrid grid = SparseGrid.readFrom(input);
+    int nOfIndividuals = input.readInt();
+    List<Individual> individuals = new ArrayList<>(nOfIndividuals);
+    for (int i = 0; i < nOfIndividuals; i = i + 1) {
+      individuals.add(readIndividual(input, configuration));
+    }
+    return new State(k, grid, individuals, configuration);
+  }
+
+  public static void write(State state, OutputStream outputStream) throws IOException {
+    DataOutputStream output = new DataOutputStream(outputStream);
+    Configuration configuration = state.configuration();
+    output.writeInt(MAGIC);
+    output.writeInt(VERSION);
+    writeConfiguration(output, configuration);
+    output.writeLong(state.k());
+    SparseGrid grid = (state.data() instanceof SparseGrid sparseGrid) ? sparseGrid : SparseGrid.of(
+        configuration.maxLocation(),
+        new boolean[configuration.dataSize()],
+        state.data()
+    );
+    grid.writeTo(output);
+    output.writeInt(state.individuals().size());
+    for (Individual individual : state.individuals()) {
+      writeIndividual(output, individual);
+    }
+    output.flush();
+  }
+
+  static void writeConfiguration(DataOutputStream output, Configuration configuration) throws IOException {
+    writeLocation(output, configuration.maxLocation(), true);
+    output.writeBoolean(configuration.isToroidal());
+    output.writeInt(configuration.dataSize());
+    output.writeInt(configuration.individualMemorySize());
+    output.writeInt(configuration.maxNOfIndividuals());
+    output.writeByte(configuration.neighborhood().ordinal());
+    output.writeInt(configuration.neighborDataSize());
+  }
+
+  static void writeIndividual(DataOutputStream output, Individual individual) throws IOException {
+    writeLocation(output, individual.location(), false);
+    output.writeLong(individual.kOfBirth());
+    output.writeLong(Utils.bitStringToWord(individual.memory()));
+  }
+
+  static void writeLocation(DataOutputStream output, Location location, boolean withSize) throws IOException {
+    if (withSize) {
+      output.writeInt(location.coords().length);
+    }
+    for (int c : location.coords()) {
+      output.writeInt(c);
+    }
+  }
+}
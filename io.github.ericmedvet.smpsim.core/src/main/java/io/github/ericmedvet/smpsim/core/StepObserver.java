@@ -0,0 +1,79 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smpsim-core
+ * %%
+ * Copyright (C) 2018 - 2026 Eric Medvet
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package io.github.ericmedvet.smpsim.core;
+
+import java.util.List;
+
+// receives the events of Environment.step(), on the stepping thread: implementations should be cheap
+public interface StepObserver {
+
+  static StepObserver all(List<StepObserver> observers) {
+    return new StepObserver() {
+      @Override
+      public void processed(int instructionIndex, int input) {
+        for (StepObserver observer : observers) {
+          observer.processed(instructionIndex, input);
+        }
+      }
+
+      @Override
+      public void replicated(int instructionIndex, boolean isGranted) {
+        for (StepObserver observer : observers) {
+          observer.replicated(instructionIndex, isGranted);
+        }
+      }
+
+      @Override
+      public void stepped(long k, int nOfIndividuals, int nOfFilledCells, int nOfBirths, int nOfDeaths) {
+        for (StepObserver observer : observers) {
+          observer.stepped(k, nOfIndividuals, nOfFilledCells, nOfBirths, nOfDeaths);
+        }
+      }
+
+      @Override
+      public void written(long cell, long oldWord, long newWord) {
+        for (StepObserver observer : observers) {
+          observer.written(cell, oldWord, newWord);
+        }
+      }
+    };
+  }
+
+  static StepObserver all(StepObserver... observers) {
+    return all(List.of(observers));
+  }
+
+  // one call per individual; input is -1 if the individual died without processing
+  default void processed(int instructionIndex, int input) {
+  }
+
+  // one call per individual asking for replication, before its processed(): replication is denied when the
+  // population is full
+  default void replicated(int instructionIndex, boolean isGranted) {
+  }
+
+  // one call per step, after the other events: the counts refer to the state at k, births and deaths to the step
+  default void stepped(long k, int nOfIndividuals, int nOfFilledCells, int nOfBirths, int nOfDeaths) {
+  }
+
+  // one call per actually written cell, with the word it had before the step and the one it has after
+  default void written(long cell, long oldWord, long newWord) {
+  }
+}
@@ -0,0 +1,113 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smpsim-core
+ * %%
+ * Copyright (C) 2018 - 2026 Eric Medvet
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package io.github.ericmedvet.smpsim.core;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.random.RandomGenerator;
+
+// the usual statistics of a run, in constant memory and updated while stepping: can be queried at any time
+public class StepStatistics implements StepObserver {
+
+  private final RunningStatistics nOfIndividuals;
+  private final RunningStatistics nOfFilledCells;
+  private final Reservoir nOfIndividualsSample;
+  private final Histogram cellValues;
+  private final long[] instructionUsages;
+  private long nOfBirths;
+  private long nOfDeaths;
+  private long lastK = -1;
+
+  public StepStatistics(
+      int nOfInstructions,
+      int dataSize,
+      Map<Location, boolean[]> initialData,
+      int nOfBins,
+      int sampleSize,
+      RandomGenerator rg
+  ) {
+    nOfIndividuals = new RunningStatistics();
+    nOfFilledCells = new RunningStatistics();
+    nOfIndividualsSample = new Reservoir(sampleSize, rg);
+    cellValues = new Histogram(nOfBins, dataSize);
+    instructionUsages = new long[nOfInstructions];
+    // cells start with their initial values, then writes move them between bins
+    if (initialData instanceof SparseGrid grid) {
+      Map<Location, boolean[]> written = grid.written();
+      long nOfCells = Arrays.stream(grid.maxLocation().coords()).asLongStream().reduce(1, (n1, n2) -> n1 * n2);
+      cellValues.accept(Utils.bitStringToWord(grid.defaultValue()), nOfCells - written.size());
+      written.values().forEach(value -> cellValues.accept(Utils.bitStringToWord(value)));
+    } else {
+      initialData.values().forEach(value -> cellValues.accept(Utils.bitStringToWord(value)));
+    }
+  }
+
+  public Histogram cellValues() {
+    return cellValues;
+  }
+
+  public long[] instructionUsages() {
+    return Arrays.copyOf(instructionUsages, instructionUsages.length);
+  }
+
+  public long lastK() {
+    return lastK;
+  }
+
+  public long nOfBirths() {
+    return nOfBirths;
+  }
+
+  public long nOfDeaths() {
+    return nOfDeaths;
+  }
+
+  public RunningStatistics nOfFilledCells() {
+    return nOfFilledCells;
+  }
+
+  public RunningStatistics nOfIndividuals() {
+    return nOfIndividuals;
+  }
+
+  public Reservoir nOfIndividualsSample() {
+    return nOfIndividualsSample;
+  }
+
+  @Override
+  public void processed(int instructionIndex, int input) {
+    instructionUsages[instructionIndex] = instructionUsages[instructionIndex] + 1;
+  }
+
+  @Override
+  public void stepped(long k, int nOfIndividuals, int nOfFilledCells, int nOfBirths, int nOfDeaths) {
+    this.nOfIndividuals.accept(nOfIndividuals);
+    this.nOfFilledCells.accept(nOfFilledCells);
+    nOfIndividualsSample.accept(nOfIndividuals);
+    this.nOfBirths = this.nOfBirths + nOfBirths;
+    this.nOfDeaths = this.nOfDeaths + nOfDeaths;
+    lastK = k;
+  }
+
+  @Override
+  public void written(long cell, long oldWord, long newWord) {
+    cellValues.replace(oldWord, newWord);
+  }
+}
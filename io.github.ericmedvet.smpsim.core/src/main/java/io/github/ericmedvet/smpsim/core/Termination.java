@@ -0,0 +1,135 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smpsim-core
+ * %%
+ * Copyright (C) 2018 - 2026 Eric Medvet
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package io.github.ericmedvet.smpsim.core;
+
+import io.github.ericmedvet.smpsim.core.Environment.State;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+// terminations may be stateful (they see one state per tick): use a new instance for each run
+public interface Termination extends Predicate<State> {
+
+  static Termination any(Termination... terminations) {
+    return state -> {
+      // all are evaluated, without short-circuit, so that stateful ones see every tick
+      boolean terminated = false;
+      for (Termination termination : terminations) {
+        terminated = termination.test(state) || terminated;
+      }
+      return terminated;
+    };
+  }
+
+  static Termination extinction() {
+    return state -> state.individuals().isEmpty();
+  }
+
+  static Termination maxK(long maxK) {
+    return state -> state.k() > maxK;
+  }
+
+  static Termination saturation(int nOfTicks) {
+    return new Termination() {
+      private int count = 0;
+
+      @Override
+      public boolean test(State state) {
+        count = (state.individuals().size() >= state.configuration().maxNOfIndividuals()) ? (count + 1) : 0;
+        return count >= nOfTicks;
+      }
+    };
+  }
+
+  static Termination stagnation(int nOfTicks) {
+    // only the cells below individuals may change in one step: the state is unchanged if the individuals and the
+    // cells they were on are unchanged
+    return new Termination() {
+      private int count = 0;
+      private List<Location> locations = null;
+      // used instead of locations when individuals are a population, to avoid allocating at every tick
+      private long[] cells = null;
+      private int nOfCells;
+      private long individualsHash;
+      private long cellsHash;
+
+      private static long hash(State state, List<Location> locations) {
+        long hash = 0;
+        for (Location location : locations) {
+          hash = 31 * hash + Arrays.hashCode(state.data().get(location));
+        }
+        return hash;
+      }
+
+      private static long hash(State state, long[] cells, int n) {
+        long hash = 0;
+        for (int i = 0; i < n; i = i + 1) {
+          long word = (state.data() instanceof SparseGrid grid) ? grid.word(cells[i]) : Utils.bitStringToWord(
+              state.data().get(Location.ofIndex(cells[i], state.configuration().maxLocation()))
+          );
+          hash = 31 * hash + Long.hashCode(word);
+        }
+        return hash;
+      }
+
+      @Override
+      public boolean test(State state) {
+        if (state.individuals() instanceof Population population) {
+          long newIndividualsHash = 0;
+          for (int i = 0; i < population.size(); i = i + 1) {
+            newIndividualsHash = 31 * newIndividualsHash + Long.hashCode(population.cell(i));
+            newIndividualsHash = 31 * newIndividualsHash + Long.hashCode(population.kOfBirth(i));
+            newIndividualsHash = 31 * newIndividualsHash + Long.hashCode(population.memory(i));
+          }
+          if (cells != null && newIndividualsHash == individualsHash && hash(state, cells, nOfCells) == cellsHash) {
+            count = count + 1;
+          } else {
+            count = 0;
+          }
+          if (cells == null || cells.length < population.size()) {
+            cells = new long[Math.max(population.size(), (cells == null) ? 0 : (cells.length * 2))];
+          }
+          for (int i = 0; i < population.size(); i = i + 1) {
+            cells[i] = population.cell(i);
+          }
+          nOfCells = population.size();
+          locations = null;
+          individualsHash = newIndividualsHash;
+          cellsHash = hash(state, cells, nOfCells);
+          return count >= nOfTicks;
+        }
+        long newIndividualsHash = 0;
+        for (Individual individual : state.individuals()) {
+          newIndividualsHash = 31 * newIndividualsHash + individual.hashCode();
+        }
+        if (locations != null && newIndividualsHash == individualsHash && hash(state, locations) == cellsHash) {
+          count = count + 1;
+        } else {
+          count = 0;
+        }
+        locations = state.individuals().stream().map(Individual::location).toList();
+        cells = null;
+        individualsHash = newIndividualsHash;
+        cellsHash = hash(state, locations);
+        return count >= nOfTicks;
+      }
+    };
+  }
+}
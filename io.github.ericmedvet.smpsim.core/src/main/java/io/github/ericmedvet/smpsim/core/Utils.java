@@ -35,6 +35,19 @@ public class Utils {
     return n;
   }
 
+  public static long bitStringToWord(boolean[] bitString) {
+    if (bitString.length > Long.SIZE) {
+      throw new IllegalArgumentException(
+          "Wrong bit string size: %d > %d".formatted(bitString.length, Long.SIZE)
+      );
+    }
+    long word = 0;
+    for (int i = 0; i < bitString.length; i = i + 1) {
+      word = word | (bitString[i] ? (1L << i) : 0L);
+    }
+    return word;
+  }
+
   public static boolean[] intToSizedBitString(int n, int size) {
     boolean[] bits = new boolean[size];
     for (int i = size - 1; i >= 0; i--) {
@@ -47,6 +60,15 @@ public class Utils {
     return intToSizedBitString(n, ceilLog2(max));
   }
 
+  // counter-based generator: the output depends only on the arguments, not on the order of the calls
+  public static long counterHash(long seed, long... counters) {
+    long h = mix64(seed);
+    for (long counter : counters) {
+      h = mix64(h + 0x9E3779B97F4A7C15L * (counter + 1));
+    }
+    return h;
+  }
+
   public static int ceilLog2(int n) {
     int k = n - 1;
     int log = 0;
@@ -70,6 +92,12 @@ public class Utils {
     return out + 1;
   }
 
+  private static long mix64(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
   public static boolean isPowerOfTwo(int n) {
     return n == Math.powExact(2, ceilLog2(n));
   }
@@ -120,4 +148,12 @@ public class Utils {
     }
     return out;
   }
+
+  public static boolean[] wordToBitString(long word, int size) {
+    boolean[] bits = new boolean[size];
+    for (int i = 0; i < size; i = i + 1) {
+      bits[i] = ((word >>> i) & 1L) != 0;
+    }
+    return bits;
+  }
 }
\ No newline at end of file